@@ -0,0 +1,111 @@
+package spritemanipulator;
+
+/**
+ * Row-level conversion between SNES 4BPP planar data and color indices.
+ * <br><br>
+ * A row of 8 pixels is handled as a single {@code long},
+ * where byte {@code c} (least significant first) holds the color index of pixel {@code c}.
+ * Each of the 4 bit planes of that row is a single byte of the 32 byte block,
+ * as laid out in {@link SpriteManipulator#BPPI}.
+ *
+ * @author fatmanspanda
+ */
+final class Codec4BPP {
+	/**
+	 * Spreads the 8 bits of a plane byte into the low bit of each byte of a {@code long}.
+	 * The most significant bit is the leftmost pixel, so it lands in byte 0.
+	 */
+	private static final long[] SPREAD = new long[256];
+	static {
+		for (int b = 0; b < 256; b++) {
+			long s = 0;
+			for (int c = 0; c < 8; c++) {
+				if ((b & (0x80 >> c)) != 0) {
+					s |= 1L << (c * 8);
+				}
+			}
+			SPREAD[b] = s;
+		}
+	}
+
+	// low bit of every byte in a long
+	private static final long LOW_BITS = 0x0101010101010101L;
+
+	/**
+	 * Multiplying the masked low bits by this gathers the bit of byte {@code c}
+	 * into bit {@code 63 - c}, so the top byte of the product is the plane byte.
+	 * No two partial products collide, so there are no carries into the top byte.
+	 */
+	private static final long GATHER = 0x8040201008040201L;
+
+	/**
+	 * Offset of each row's bit planes 0 and 2 within a block.
+	 * Planes 1 and 3 immediately follow them.
+	 */
+	static final int PLANES_01 = 0;
+	static final int PLANES_23 = 16;
+
+	/**
+	 * Prevent instantiation
+	 */
+	private Codec4BPP() {}
+
+	/**
+	 * Combines the 4 bit planes of a row into 8 color indices.
+	 */
+	static long decodeRow(byte p0, byte p1, byte p2, byte p3) {
+		return SPREAD[p0 & 0xFF]
+				| (SPREAD[p1 & 0xFF] << 1)
+				| (SPREAD[p2 & 0xFF] << 2)
+				| (SPREAD[p3 & 0xFF] << 3);
+	}
+
+	/**
+	 * Decodes row {@code r} of the block starting at {@code blockStart}.
+	 */
+	static long decodeRow(byte[] sprite, int blockStart, int r) {
+		int lo = blockStart + PLANES_01 + r * 2;
+		int hi = blockStart + PLANES_23 + r * 2;
+		return decodeRow(sprite[lo], sprite[lo+1], sprite[hi], sprite[hi+1]);
+	}
+
+	/**
+	 * Pulls a single bit plane out of a row of 8 color indices.
+	 */
+	static byte encodePlane(long row, int plane) {
+		return (byte) ((((row >>> plane) & LOW_BITS) * GATHER) >>> 56);
+	}
+
+	/**
+	 * Encodes a row of 8 color indices into row {@code r} of the block starting at {@code blockStart}.
+	 */
+	static void encodeRow(long row, byte[] sprite, int blockStart, int r) {
+		int lo = blockStart + PLANES_01 + r * 2;
+		int hi = blockStart + PLANES_23 + r * 2;
+		sprite[lo] = encodePlane(row, 0);
+		sprite[lo+1] = encodePlane(row, 1);
+		sprite[hi] = encodePlane(row, 2);
+		sprite[hi+1] = encodePlane(row, 3);
+	}
+
+	/**
+	 * Packs 8 color indices into a row.
+	 * Only the low 4 bits of each index are kept.
+	 */
+	static long packRow(byte[] pixels, int off) {
+		long row = 0;
+		for (int c = 7; c >= 0; c--) {
+			row = (row << 8) | (pixels[off + c] & 0x0F);
+		}
+		return row;
+	}
+
+	/**
+	 * Unpacks a row into 8 color indices.
+	 */
+	static void unpackRow(long row, byte[] pixels, int off) {
+		for (int c = 0; c < 8; c++, row >>>= 8) {
+			pixels[off + c] = (byte) row;
+		}
+	}
+}
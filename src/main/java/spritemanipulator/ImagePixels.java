@@ -0,0 +1,150 @@
+package spritemanipulator;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Reads pixels of common image types straight from their {@link DataBuffer}.
+ * <br><br>
+ * Colors are given exactly as a {@code ColorConvertOp} to ABGR would give them:
+ * opaque pixels keep their color and fully transparent pixels become {@code 0}.
+ * Partly transparent pixels are rounded by that conversion in ways not reproduced here,
+ * so reading stops when one is found.
+ *
+ * @author fatmanspanda
+ */
+final class ImagePixels {
+	/**
+	 * Prevent instantiation
+	 */
+	private ImagePixels() {}
+
+	/**
+	 * @return {@code true} if the image's pixels can be read by {@link #readARGB}
+	 */
+	static boolean canRead(BufferedImage img) {
+		switch (img.getType()) {
+			case BufferedImage.TYPE_INT_RGB :
+			case BufferedImage.TYPE_INT_ARGB :
+			case BufferedImage.TYPE_INT_BGR :
+			case BufferedImage.TYPE_3BYTE_BGR :
+			case BufferedImage.TYPE_4BYTE_ABGR :
+			case BufferedImage.TYPE_BYTE_INDEXED :
+				break;
+			case BufferedImage.TYPE_BYTE_BINARY : // packed pixels go through getRGB
+				return true;
+			default :
+				return false;
+		}
+
+		// sub images and odd layouts don't start their data at the beginning of the buffer
+		WritableRaster raster = img.getRaster();
+		DataBuffer buffer = raster.getDataBuffer();
+		return raster.getParent() == null
+				&& buffer.getNumBanks() == 1
+				&& buffer.getOffset() == 0;
+	}
+
+	/**
+	 * Reads full rows of an image as ARGB.
+	 * @param img - an image {@link #canRead(BufferedImage)} accepts
+	 * @param y - first row
+	 * @param rows - number of rows
+	 * @param dst - destination, at least {@code width * rows} long
+	 * @return {@code false} if a pixel is partly transparent; {@code dst} is then incomplete
+	 */
+	static boolean readARGB(BufferedImage img, int y, int rows, int[] dst) {
+		int w = img.getWidth();
+		int n = w * rows;
+		int off = y * w;
+		DataBuffer buffer = img.getRaster().getDataBuffer();
+
+		switch (img.getType()) {
+			case BufferedImage.TYPE_INT_RGB : {
+				int[] data = ((DataBufferInt) buffer).getData();
+				for (int i = 0; i < n; i++) {
+					dst[i] = 0xFF000000 | data[off + i];
+				}
+				return true; // always opaque
+			}
+			case BufferedImage.TYPE_INT_BGR : {
+				int[] data = ((DataBufferInt) buffer).getData();
+				for (int i = 0; i < n; i++) {
+					int v = data[off + i];
+					dst[i] = 0xFF000000 | ((v & 0xFF) << 16) | (v & 0xFF00) | ((v >> 16) & 0xFF);
+				}
+				return true; // always opaque
+			}
+			case BufferedImage.TYPE_3BYTE_BGR : {
+				byte[] data = ((DataBufferByte) buffer).getData();
+				for (int i = 0, p = off * 3; i < n; i++, p += 3) {
+					dst[i] = 0xFF000000
+							| ((data[p+2] & 0xFF) << 16)
+							| ((data[p+1] & 0xFF) << 8)
+							| (data[p] & 0xFF);
+				}
+				return true; // always opaque
+			}
+			case BufferedImage.TYPE_INT_ARGB : {
+				int[] data = ((DataBufferInt) buffer).getData();
+				System.arraycopy(data, off, dst, 0, n);
+				break;
+			}
+			case BufferedImage.TYPE_4BYTE_ABGR : {
+				byte[] data = ((DataBufferByte) buffer).getData();
+				for (int i = 0, p = off * 4; i < n; i++, p += 4) {
+					dst[i] = ((data[p] & 0xFF) << 24)
+							| ((data[p+3] & 0xFF) << 16)
+							| ((data[p+2] & 0xFF) << 8)
+							| (data[p+1] & 0xFF);
+				}
+				break;
+			}
+			case BufferedImage.TYPE_BYTE_INDEXED : {
+				byte[] data = ((DataBufferByte) buffer).getData();
+				int[] colors = getColors((IndexColorModel) img.getColorModel());
+				for (int i = 0; i < n; i++) {
+					dst[i] = colors[data[off + i] & 0xFF];
+				}
+				break;
+			}
+			default :
+				img.getRGB(0, y, w, rows, dst, 0, w);
+				break;
+		}
+
+		return fixAlpha(dst, n);
+	}
+
+	/**
+	 * Blacks out fully transparent pixels.
+	 * @return {@code false} if any pixel is partly transparent
+	 */
+	private static boolean fixAlpha(int[] argb, int n) {
+		for (int i = 0; i < n; i++) {
+			int a = argb[i] >>> 24;
+			if (a != 0xFF) {
+				if (a != 0) {
+					return false;
+				}
+				argb[i] = 0;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gets every color a byte can index, including those past the end of the map.
+	 */
+	private static int[] getColors(IndexColorModel cm) {
+		int[] ret = new int[256];
+		for (int i = 0; i < 256; i++) {
+			ret[i] = cm.getRGB(i);
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,95 @@
+package spritemanipulator;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+
+import static spritemanipulator.SpriteManipulator.*;
+
+/**
+ * A single indexed color raster of a sprite sheet that can be viewed with any palette.
+ * <br><br>
+ * Every mail and gloves variant uses the same color indices and only differs in colors,
+ * so each image returned here wraps the same pixel buffer with a different {@link IndexColorModel}.
+ * Switching between variants only costs building a 16 color model.
+ * <br><br>
+ * Changes made through {@link #update(TileMap)} are seen by every image made from this sheet.
+ *
+ * @author fatmanspanda
+ */
+public final class IndexedSheet {
+	// local vars
+	private final WritableRaster raster;
+
+	/**
+	 * Creates a new indexed raster from an index map.
+	 * @param map
+	 */
+	public IndexedSheet(TileMap map) {
+		raster = Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE,
+				SPRITE_SHEET_WIDTH, SPRITE_SHEET_HEIGHT, 1, null);
+		update(map);
+	}
+
+	/**
+	 * Copies every color index from {@code map} into this sheet.
+	 * @param map
+	 */
+	public void update(TileMap map) {
+		raster.setDataElements(0, 0, SPRITE_SHEET_WIDTH, SPRITE_SHEET_HEIGHT, map.data());
+	}
+
+	/**
+	 * Wraps the shared raster with a color model.
+	 * @param cm
+	 */
+	public BufferedImage getImage(IndexColorModel cm) {
+		return new BufferedImage(cm, raster, false, null);
+	}
+
+	/**
+	 * Wraps the shared raster with an ARGB palette.
+	 * @param argb - as made by {@link SpriteManipulator#getARGBPalette(byte[][])}
+	 */
+	public BufferedImage getImage(int[] argb) {
+		return getImage(makeColorModel(argb));
+	}
+
+	/**
+	 * Wraps the shared raster with an RGB palette.
+	 * @param palette
+	 */
+	public BufferedImage getImage(byte[][] palette) {
+		return getImage(getARGBPalette(palette));
+	}
+
+	/**
+	 * Creates a color model from an ARGB palette.
+	 * @param argb
+	 */
+	public static IndexColorModel makeColorModel(int[] argb) {
+		return new IndexColorModel(8, argb.length, argb, 0, true, -1, DataBuffer.TYPE_BYTE);
+	}
+
+	/**
+	 * Creates the color model of every mail and gloves variant,
+	 * laid out as in {@link SpriteManipulator#getMailPalettes(byte[], byte[])}.
+	 * @param pal - palette data, as 5:5:5
+	 * @param gloves - gloves data, as 5:5:5
+	 */
+	public static IndexColorModel[][] getMailColorModels(byte[] pal, byte[] gloves) {
+		byte[][][][] subpals = getMailPalettes(pal, gloves);
+		IndexColorModel[][] ret = new IndexColorModel[subpals.length][];
+
+		for (int i = 0; i < subpals.length; i++) {
+			ret[i] = new IndexColorModel[subpals[i].length];
+			for (int j = 0; j < subpals[i].length; j++) {
+				ret[i][j] = makeColorModel(getARGBPalette(subpals[i][j]));
+			}
+		}
+
+		return ret;
+	}
+}
@@ -0,0 +1,215 @@
+package spritemanipulator;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Every mail and gloves variant of a single sprite,
+ * each rendered only the first time it is asked for.
+ * <br><br>
+ * The sprite is decoded into a {@link TileMap} once and shared by every variant.
+ * Variants that end up with the same colors, such as bunny with any gloves,
+ * share a single image.
+ * <br><br>
+ * This class is safe to use from multiple threads;
+ * a variant is only ever rendered once, no matter how many threads ask for it.
+ *
+ * @author fatmanspanda
+ */
+public final class MailRenderSet {
+	// class constants
+	public static final int GREEN_MAIL = 0;
+	public static final int BLUE_MAIL = 1;
+	public static final int RED_MAIL = 2;
+	public static final int BUNNY = 3;
+	public static final int ZAPPED = 4;
+	public static final int MAIL_COUNT = 5;
+
+	public static final int NO_GLOVES = 0;
+	public static final int POWER_GLOVES = 1;
+	public static final int TITANS_MITTS = 2;
+	public static final int GLOVE_COUNT = 3;
+
+	// local vars
+	private final TileMap map;
+	private final PaletteKey[][] palettes = new PaletteKey[MAIL_COUNT][GLOVE_COUNT];
+	private final ConcurrentHashMap<PaletteKey, CompletableFuture<BufferedImage>> images =
+			new ConcurrentHashMap<PaletteKey, CompletableFuture<BufferedImage>>();
+
+	/**
+	 * Creates a new set of variants for an already decoded sprite.
+	 * @param map - color index map of the sprite
+	 * @param pal - palette data, as 5:5:5
+	 * @param gloves - gloves data, as 5:5:5
+	 */
+	public MailRenderSet(TileMap map, byte[] pal, byte[] gloves) {
+		this.map = map;
+		byte[][][][] subpals = SpriteManipulator.getMailPalettes(pal, gloves);
+		for (int i = 0; i < MAIL_COUNT; i++) {
+			for (int j = 0; j < GLOVE_COUNT; j++) {
+				palettes[i][j] = new PaletteKey(SpriteManipulator.getARGBPalette(subpals[i][j]));
+			}
+		}
+	}
+
+	/**
+	 * Creates a new set of variants, decoding the sprite data once.
+	 * @param spriteData - SNES 4BPP sprite data
+	 * @param pal - palette data, as 5:5:5
+	 * @param gloves - gloves data, as 5:5:5
+	 */
+	public MailRenderSet(byte[] spriteData, byte[] pal, byte[] gloves) {
+		this(TileMap.fromSpriteData(spriteData), pal, gloves);
+	}
+
+	/**
+	 * Creates a new set of variants for a {@code ZSPRFile}.
+	 * @param spr
+	 */
+	public MailRenderSet(ZSPRFile spr) {
+		this(spr.getSpriteData(), spr.getPalData(), spr.getGlovesData());
+	}
+
+	/**
+	 * @return The index map shared by every variant
+	 */
+	public TileMap getTileMap() {
+		return map;
+	}
+
+	/**
+	 * @return The ARGB palette used by a variant
+	 * @param mail
+	 * @param glove
+	 */
+	public int[] getPalette(int mail, int glove) {
+		return palettes[mail][glove].colors.clone();
+	}
+
+	/**
+	 * Gets the image of a variant, rendering it on the calling thread if it has not been yet.
+	 * @param mail - one of {@link #GREEN_MAIL}, {@link #BLUE_MAIL}, {@link #RED_MAIL},
+	 * {@link #BUNNY}, {@link #ZAPPED}
+	 * @param glove - one of {@link #NO_GLOVES}, {@link #POWER_GLOVES}, {@link #TITANS_MITTS}
+	 */
+	public BufferedImage get(int mail, int glove) {
+		PaletteKey key = palettes[mail][glove];
+		CompletableFuture<BufferedImage> ret = images.get(key);
+
+		if (ret == null) {
+			CompletableFuture<BufferedImage> mine = new CompletableFuture<BufferedImage>();
+			ret = images.putIfAbsent(key, mine);
+			if (ret == null) {
+				render(key, mine);
+				ret = mine;
+			}
+		}
+
+		return ret.join();
+	}
+
+	/**
+	 * Gets the image of a variant, rendering it on {@code executor} if it has not been yet.
+	 * @param mail
+	 * @param glove
+	 * @param executor
+	 */
+	public CompletableFuture<BufferedImage> getAsync(int mail, int glove, Executor executor) {
+		PaletteKey key = palettes[mail][glove];
+		CompletableFuture<BufferedImage> ret = images.get(key);
+
+		if (ret == null) {
+			CompletableFuture<BufferedImage> mine = new CompletableFuture<BufferedImage>();
+			ret = images.putIfAbsent(key, mine);
+			if (ret == null) {
+				try {
+					executor.execute(() -> render(key, mine));
+				} catch (RuntimeException e) { // rejected by the executor
+					// don't leave a future in the map that nothing will complete
+					images.remove(key, mine);
+					mine.completeExceptionally(e);
+					throw e;
+				}
+				ret = mine;
+			}
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Renders every distinct variant on {@code executor}.
+	 * @param executor
+	 * @return A future that completes once every variant has been rendered
+	 */
+	public CompletableFuture<Void> renderAll(Executor executor) {
+		CompletableFuture<?>[] all = new CompletableFuture<?>[MAIL_COUNT * GLOVE_COUNT];
+		for (int i = 0, k = 0; i < MAIL_COUNT; i++) {
+			for (int j = 0; j < GLOVE_COUNT; j++, k++) {
+				all[k] = getAsync(i, j, executor);
+			}
+		}
+		return CompletableFuture.allOf(all);
+	}
+
+	/**
+	 * Renders every variant that hasn't been yet and
+	 * returns them in the same layout as {@link SpriteManipulator#makeAllMails(TileMap, byte[], byte[])}.
+	 */
+	public BufferedImage[][] toArray() {
+		BufferedImage[][] ret = new BufferedImage[MAIL_COUNT][GLOVE_COUNT];
+		for (int i = 0; i < MAIL_COUNT; i++) {
+			for (int j = 0; j < GLOVE_COUNT; j++) {
+				ret[i][j] = get(i, j);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * @return {@code true} if the variant has already been rendered
+	 * @param mail
+	 * @param glove
+	 */
+	public boolean isRendered(int mail, int glove) {
+		CompletableFuture<BufferedImage> f = images.get(palettes[mail][glove]);
+		return f != null && f.isDone() && !f.isCompletedExceptionally();
+	}
+
+	// renders into a future that has already been claimed
+	private void render(PaletteKey key, CompletableFuture<BufferedImage> target) {
+		try {
+			target.complete(SpriteManipulator.makeSheet(map, key.colors));
+		} catch (RuntimeException | Error e) {
+			// let the next request try again
+			images.remove(key, target);
+			target.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * Wraps an ARGB palette so variants with the same colors resolve to the same image.
+	 */
+	private static final class PaletteKey {
+		final int[] colors;
+		final int hash;
+
+		PaletteKey(int[] colors) {
+			this.colors = colors;
+			this.hash = Arrays.hashCode(colors);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof PaletteKey && Arrays.equals(colors, ((PaletteKey) o).colors);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+}
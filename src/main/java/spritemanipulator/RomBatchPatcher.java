@@ -0,0 +1,259 @@
+package spritemanipulator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+import static spritemanipulator.SpriteManipulator.*;
+
+/**
+ * Patches many sprites into copies of a single base ROM in parallel.
+ * <br><br>
+ * The base ROM is read once and never changed.
+ * Each job copies it, overlays the sprite, palette and gloves data,
+ * and writes the copy out to its own file.
+ * At most {@code maxInFlight} copies exist at any time,
+ * so memory use stays around {@code maxInFlight} times the size of the ROM.
+ *
+ * @author fatmanspanda
+ */
+public final class RomBatchPatcher {
+	// local vars
+	private final byte[] base;
+	private final Executor executor;
+	private final int maxInFlight;
+
+	/**
+	 * Creates a patcher for a base ROM held in memory.
+	 * The array is not copied and must not be changed while the patcher is in use.
+	 * @param base - base ROM data
+	 * @param executor - runs each job
+	 * @param maxInFlight - most jobs holding a ROM copy at once
+	 * @throws IllegalArgumentException if the ROM is too small to hold a sprite
+	 */
+	public RomBatchPatcher(byte[] base, Executor executor, int maxInFlight) {
+		checkRomSize(base);
+		if (maxInFlight < 1) {
+			throw new IllegalArgumentException("At least 1 job must be allowed in flight");
+		}
+		this.base = base;
+		this.executor = executor;
+		this.maxInFlight = maxInFlight;
+	}
+
+	/**
+	 * Creates a patcher, reading the base ROM from a file once.
+	 * @param base - base ROM file
+	 * @param executor - runs each job
+	 * @param maxInFlight - most jobs holding a ROM copy at once
+	 * @throws IOException
+	 */
+	public RomBatchPatcher(Path base, Executor executor, int maxInFlight) throws IOException {
+		this(Files.readAllBytes(base), executor, maxInFlight);
+	}
+
+	/**
+	 * Patches every job's sprite into a copy of the base ROM and writes it.
+	 * Jobs that fail don't stop the rest of the batch.
+	 * @param jobs
+	 * @return Results in the same order as {@code jobs}
+	 * @throws InterruptedException if interrupted while waiting for room to start a job
+	 */
+	public Report run(List<Job> jobs) throws InterruptedException {
+		long start = System.nanoTime();
+		Semaphore inFlight = new Semaphore(maxInFlight);
+		List<CompletableFuture<Result>> futures = new ArrayList<CompletableFuture<Result>>(jobs.size());
+
+		for (final Job job : jobs) {
+			inFlight.acquire();
+			CompletableFuture<Result> f;
+			try {
+				f = CompletableFuture.supplyAsync(() -> patch(job), executor);
+				f.whenComplete((r, e) -> inFlight.release());
+			} catch (RuntimeException e) { // rejected by the executor
+				inFlight.release();
+				f = CompletableFuture.completedFuture(new Result(job, e, 0));
+			}
+			futures.add(f);
+		}
+
+		List<Result> results = new ArrayList<Result>(futures.size());
+		for (CompletableFuture<Result> f : futures) {
+			results.add(f.join());
+		}
+
+		return new Report(results, base.length, System.nanoTime() - start);
+	}
+
+	/**
+	 * Runs a single job on the current thread.
+	 * Anything thrown, even an {@code OutOfMemoryError} from copying the ROM,
+	 * becomes a failed result so {@link #run(List)} never has to unwrap it.
+	 */
+	private Result patch(Job job) {
+		long start = System.nanoTime();
+		try {
+			byte[] rom = base.clone();
+			patchRom(rom, job.sprite);
+			Files.write(job.output, rom);
+			return new Result(job, null, System.nanoTime() - start);
+		} catch (Throwable e) {
+			return new Result(job, e, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * A sprite and where to write the ROM patched with it.
+	 */
+	public static final class Job {
+		// local vars
+		private final ZSPRFile sprite;
+		private final Path output;
+
+		/**
+		 * @param sprite - sprite to patch in
+		 * @param output - file to write the patched ROM to
+		 */
+		public Job(ZSPRFile sprite, Path output) {
+			this.sprite = sprite;
+			this.output = output;
+		}
+
+		/**
+		 * @return Sprite patched in by this job
+		 */
+		public ZSPRFile getSprite() {
+			return sprite;
+		}
+
+		/**
+		 * @return File the patched ROM is written to
+		 */
+		public Path getOutput() {
+			return output;
+		}
+	}
+
+	/**
+	 * Outcome of a single job.
+	 */
+	public static final class Result {
+		// local vars
+		private final Job job;
+		private final Throwable error;
+		private final long nanos;
+
+		private Result(Job job, Throwable error, long nanos) {
+			this.job = job;
+			this.error = error;
+			this.nanos = nanos;
+		}
+
+		/**
+		 * @return The job this is the result of
+		 */
+		public Job getJob() {
+			return job;
+		}
+
+		/**
+		 * @return {@code true} if the patched ROM was written
+		 */
+		public boolean isSuccess() {
+			return error == null;
+		}
+
+		/**
+		 * @return Why the job failed, or {@code null} if it didn't
+		 */
+		public Throwable getError() {
+			return error;
+		}
+
+		/**
+		 * @return Time spent on the job, in nanoseconds
+		 */
+		public long getNanos() {
+			return nanos;
+		}
+	}
+
+	/**
+	 * Results of a whole batch.
+	 */
+	public static final class Report {
+		// local vars
+		private final List<Result> results;
+		private final int romSize;
+		private final long nanos;
+		private final int successes;
+
+		private Report(List<Result> results, int romSize, long nanos) {
+			this.results = Collections.unmodifiableList(results);
+			this.romSize = romSize;
+			this.nanos = nanos;
+			int count = 0;
+			for (Result r : results) {
+				if (r.isSuccess()) {
+					count++;
+				}
+			}
+			successes = count;
+		}
+
+		/**
+		 * @return Result of every job, in the order they were given
+		 */
+		public List<Result> getResults() {
+			return results;
+		}
+
+		/**
+		 * @return Number of ROMs written
+		 */
+		public int getSuccessCount() {
+			return successes;
+		}
+
+		/**
+		 * @return Number of jobs that failed
+		 */
+		public int getFailureCount() {
+			return results.size() - successes;
+		}
+
+		/**
+		 * @return Wall clock time of the whole batch, in nanoseconds
+		 */
+		public long getNanos() {
+			return nanos;
+		}
+
+		/**
+		 * @return ROMs written per second
+		 */
+		public double getRomsPerSecond() {
+			return nanos == 0 ? 0 : successes * 1e9 / nanos;
+		}
+
+		/**
+		 * @return Bytes of ROM written per second
+		 */
+		public double getBytesPerSecond() {
+			return getRomsPerSecond() * romSize;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d of %d ROMs patched in %.1f ms (%.1f ROMs/s, %.1f MB/s)",
+					successes, results.size(), nanos / 1e6,
+					getRomsPerSecond(), getBytesPerSecond() / (1 << 20));
+		}
+	}
+}
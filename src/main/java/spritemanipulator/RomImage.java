@@ -0,0 +1,110 @@
+package spritemanipulator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static spritemanipulator.SpriteManipulator.*;
+
+/**
+ * The sprite, palette and gloves data of a ROM.
+ * <br><br>
+ * Opening a ROM file reads only those regions, about 29KB,
+ * with positional reads on a single channel,
+ * rather than loading the whole ROM.
+ *
+ * @author fatmanspanda
+ */
+public final class RomImage {
+	// local vars
+	private final byte[] spriteData;
+	private final byte[] palData;
+	private final byte[] glovesData;
+
+	private RomImage(byte[] spriteData, byte[] palData, byte[] glovesData) {
+		this.spriteData = spriteData;
+		this.palData = palData;
+		this.glovesData = glovesData;
+	}
+
+	/**
+	 * Reads the sprite regions of a ROM held in memory.
+	 * @param romData
+	 * @throws IllegalArgumentException if the ROM is too small to hold a sprite
+	 */
+	public RomImage(byte[] romData) {
+		checkRomSize(romData);
+		spriteData = getSpriteDataFromROM(romData);
+		palData = getPaletteDataFromROM(romData);
+		glovesData = getGlovesDataFromROM(romData);
+	}
+
+	/**
+	 * Reads the sprite regions of a ROM file.
+	 * @param rom
+	 * @throws IOException if the file can't be read or is too small to hold a sprite
+	 */
+	public static RomImage open(Path rom) throws IOException {
+		try (FileChannel fc = FileChannel.open(rom, StandardOpenOption.READ)) {
+			checkRomSize(fc);
+
+			return new RomImage(
+					readFully(fc, SPRITE_OFFSET, SPRITE_DATA_SIZE),
+					readFully(fc, PAL_OFFSET, PAL_DATA_SIZE),
+					readFully(fc, GLOVES_OFFSET, GLOVE_DATA_SIZE));
+		}
+	}
+
+	/**
+	 * Reads a ROM file straight into a new {@code ZSPRFile}.
+	 * <br>
+	 * See: {@link #open(Path)}
+	 * @param rom
+	 * @throws IOException
+	 */
+	public static ZSPRFile fromRom(Path rom) throws IOException {
+		return open(rom).toZSPRFile();
+	}
+
+	/**
+	 * @return A copy of the sprite data
+	 */
+	public byte[] getSpriteData() {
+		return spriteData.clone();
+	}
+
+	/**
+	 * @return A copy of the palette data
+	 */
+	public byte[] getPalData() {
+		return palData.clone();
+	}
+
+	/**
+	 * @return A copy of the gloves data
+	 */
+	public byte[] getGlovesData() {
+		return glovesData.clone();
+	}
+
+	/**
+	 * Creates an untitled {@code ZSPRFile} from this ROM's data.
+	 */
+	public ZSPRFile toZSPRFile() {
+		return new ZSPRFile(getSpriteData(), getPalData(), getGlovesData());
+	}
+
+	private static byte[] readFully(FileChannel fc, long pos, int size) throws IOException {
+		byte[] ret = new byte[size];
+		ByteBuffer buff = ByteBuffer.wrap(ret);
+		while (buff.hasRemaining()) {
+			int n = fc.read(buff, pos + buff.position());
+			if (n < 0) {
+				throw new IOException(romTooSmall(pos + buff.position()));
+			}
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,451 @@
+package spritemanipulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static spritemanipulator.SpriteManipulator.*;
+
+/**
+ * Creates and applies IPS and BPS patches that put a sprite into a ROM.
+ * <br><br>
+ * A sprite only changes the regions written by {@link SpriteManipulator#patchRom(byte[], ZSPRFile)},
+ * so its patch is around 29KB no matter the size of the ROM.
+ * IPS patches need no base ROM to make, and can be applied to a ROM file in place.
+ * BPS patches are made against a specific base ROM and check it when applied.
+ *
+ * @author fatmanspanda
+ */
+public final class RomPatch {
+	// IPS
+	private static final byte[] IPS_HEADER = { 'P', 'A', 'T', 'C', 'H' };
+	private static final byte[] IPS_FOOTER = { 'E', 'O', 'F' };
+	private static final int IPS_MAX_RECORD = 0xFFFF;
+	private static final int IPS_EOF_OFFSET = 0x454F46; // "EOF" as an offset
+	private static final int IPS_RLE_MIN = 9; // shorter runs are smaller as plain data
+
+	// BPS
+	private static final byte[] BPS_HEADER = { 'B', 'P', 'S', '1' };
+	private static final int BPS_SOURCE_READ = 0;
+	private static final int BPS_TARGET_READ = 1;
+	private static final int BPS_SOURCE_COPY = 2;
+	private static final int BPS_TARGET_COPY = 3;
+	private static final int BPS_FOOTER_SIZE = 12; // 3 CRC32s
+
+	/**
+	 * Prevent instantiation
+	 */
+	private RomPatch() {}
+
+	/**
+	 * Creates an IPS patch that writes a sprite's data into a ROM.
+	 * Gloves are only included if they are defined, as in {@link SpriteManipulator#patchRom(byte[], ZSPRFile)}.
+	 * @param spr
+	 */
+	public static byte[] makeIPS(ZSPRFile spr) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(SPRITE_DATA_SIZE + 1024);
+		out.write(IPS_HEADER, 0, IPS_HEADER.length);
+
+		writeIPSRegion(out, SPRITE_OFFSET, spr.getSpriteData(), SPRITE_DATA_SIZE);
+		writeIPSRegion(out, PAL_OFFSET, spr.getPalData(), PAL_DATA_SIZE);
+		byte[] glovesData = spr.getGlovesData();
+		if (hasGloves(glovesData)) {
+			writeIPSRegion(out, GLOVES_OFFSET, glovesData, GLOVE_DATA_SIZE);
+		}
+
+		out.write(IPS_FOOTER, 0, IPS_FOOTER.length);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Writes a region as IPS records, using run length records for long runs of a single byte.
+	 */
+	private static void writeIPSRegion(ByteArrayOutputStream out, int offset, byte[] data, int size) {
+		int i = 0;
+		while (i < size) {
+			// measure the run starting here
+			int run = 1;
+			while (i + run < size && data[i + run] == data[i] && run < IPS_MAX_RECORD) {
+				run++;
+			}
+
+			if (run >= IPS_RLE_MIN) {
+				writeIPSOffset(out, offset + i);
+				out.write(0);
+				out.write(0);
+				out.write(run >> 8);
+				out.write(run);
+				out.write(data[i]);
+				i += run;
+				continue;
+			}
+
+			// plain data continues until the next long run
+			int end = i + run;
+			while (end < size && end - i < IPS_MAX_RECORD) {
+				int r = 1;
+				while (end + r < size && data[end + r] == data[end] && r < IPS_RLE_MIN) {
+					r++;
+				}
+				if (r >= IPS_RLE_MIN) {
+					break;
+				}
+				end += r;
+			}
+			end = Math.min(end, i + IPS_MAX_RECORD);
+
+			writeIPSOffset(out, offset + i);
+			int len = end - i;
+			out.write(len >> 8);
+			out.write(len);
+			out.write(data, i, len);
+			i = end;
+		}
+	}
+
+	/**
+	 * Writes a 3 byte big endian offset.
+	 * ROM sprite offsets are far from the one offset that would read as {@code EOF}.
+	 */
+	private static void writeIPSOffset(ByteArrayOutputStream out, int offset) {
+		out.write(offset >> 16);
+		out.write(offset >> 8);
+		out.write(offset);
+	}
+
+	/**
+	 * Applies an IPS patch to ROM data held in memory.
+	 * The whole patch is checked first, so {@code rom} is left as is if it's bad.
+	 * @param ips
+	 * @param rom
+	 * @throws IllegalArgumentException if the patch is malformed or writes past the end of {@code rom}
+	 */
+	public static void applyIPS(byte[] ips, final byte[] rom) {
+		IPSPatch patch;
+		try {
+			patch = readIPS(ips);
+		} catch (IOException e) {
+			throw new IllegalArgumentException(e.getMessage(), e);
+		}
+		if (patch.end > rom.length) {
+			throw new IllegalArgumentException("Patch writes past the end of the ROM");
+		}
+
+		try {
+			patch.apply(new IPSWriter() {
+				@Override
+				public void write(int offset, ByteBuffer data) {
+					data.get(rom, offset, data.remaining());
+				}
+
+				@Override
+				public void truncate(int size) {
+					// arrays can't be resized; the caller can trim it
+				}
+			});
+		} catch (IOException e) {
+			throw new AssertionError(e); // writing to an array can't fail
+		}
+	}
+
+	/**
+	 * Applies an IPS patch to a ROM file in place, with positional writes.
+	 * Only the bytes named by the patch are written,
+	 * and nothing is written unless the whole patch is well formed.
+	 * @param ips
+	 * @param rom
+	 * @throws IOException if the patch is malformed or the file can't be written
+	 */
+	public static void applyIPS(byte[] ips, Path rom) throws IOException {
+		IPSPatch patch = readIPS(ips);
+		try (final FileChannel fc = FileChannel.open(rom, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			patch.apply(new IPSWriter() {
+				@Override
+				public void write(int offset, ByteBuffer data) throws IOException {
+					writeFully(fc, data, offset);
+				}
+
+				@Override
+				public void truncate(int size) throws IOException {
+					fc.truncate(size);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Receives the records of an IPS patch.
+	 */
+	private interface IPSWriter {
+		void write(int offset, ByteBuffer data) throws IOException;
+		void truncate(int size) throws IOException;
+	}
+
+	/**
+	 * The records of an IPS patch, read in full before any of them are applied.
+	 */
+	private static final class IPSPatch {
+		// local vars
+		private final List<Integer> offsets = new ArrayList<Integer>();
+		private final List<ByteBuffer> records = new ArrayList<ByteBuffer>();
+		private int truncate = -1;
+		private int end = 0; // end of the furthest record
+
+		private void add(int offset, ByteBuffer data) {
+			offsets.add(offset);
+			records.add(data);
+			end = Math.max(end, offset + data.remaining());
+		}
+
+		private void apply(IPSWriter w) throws IOException {
+			for (int i = 0; i < records.size(); i++) {
+				w.write(offsets.get(i), records.get(i));
+			}
+			if (truncate >= 0) {
+				w.truncate(truncate);
+			}
+		}
+	}
+
+	private static IPSPatch readIPS(byte[] ips) throws IOException {
+		IPSPatch ret = new IPSPatch();
+		ByteBuffer buff = ByteBuffer.wrap(ips); // big endian
+		if (ips.length < IPS_HEADER.length + IPS_FOOTER.length
+				|| !Arrays.equals(Arrays.copyOf(ips, IPS_HEADER.length), IPS_HEADER)) {
+			throw new IOException("Not an IPS patch");
+		}
+		buff.position(IPS_HEADER.length);
+
+		while (true) {
+			if (buff.remaining() < 3) {
+				throw new IOException("IPS patch ends without EOF");
+			}
+			int offset = getUnsigned24(buff);
+			if (offset == IPS_EOF_OFFSET) {
+				break;
+			}
+
+			if (buff.remaining() < 2) {
+				throw new IOException("IPS patch is truncated");
+			}
+			int size = Short.toUnsignedInt(buff.getShort());
+			if (size == 0) { // run length record
+				if (buff.remaining() < 3) {
+					throw new IOException("IPS patch is truncated");
+				}
+				int run = Short.toUnsignedInt(buff.getShort());
+				byte[] fill = new byte[run];
+				Arrays.fill(fill, buff.get());
+				ret.add(offset, ByteBuffer.wrap(fill));
+			} else {
+				if (buff.remaining() < size) {
+					throw new IOException("IPS patch is truncated");
+				}
+				ByteBuffer data = buff.slice();
+				data.limit(size);
+				ret.add(offset, data);
+				buff.position(buff.position() + size);
+			}
+		}
+
+		// optional truncation extension
+		if (buff.remaining() >= 3) {
+			ret.truncate = getUnsigned24(buff);
+		}
+		return ret;
+	}
+
+	private static int getUnsigned24(ByteBuffer buff) {
+		return ((buff.get() & 0xFF) << 16) | ((buff.get() & 0xFF) << 8) | (buff.get() & 0xFF);
+	}
+
+	/**
+	 * Creates a BPS patch from a base ROM to the same ROM with a sprite in it.
+	 * Only bytes that actually differ from the base are stored.
+	 * @param spr
+	 * @param base - base ROM data
+	 * @throws IllegalArgumentException if the ROM is too small to hold a sprite
+	 */
+	public static byte[] makeBPS(ZSPRFile spr, byte[] base) {
+		byte[] target = base.clone();
+		patchRom(target, spr);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream(SPRITE_DATA_SIZE + 1024);
+		out.write(BPS_HEADER, 0, BPS_HEADER.length);
+		writeVarInt(out, base.length);
+		writeVarInt(out, target.length);
+		writeVarInt(out, 0); // no metadata
+
+		// only the patched regions can differ; everything else is read from the source
+		int[][] regions = {
+				{ SPRITE_OFFSET, SPRITE_OFFSET + SPRITE_DATA_SIZE },
+				{ PAL_OFFSET, PAL_OFFSET + PAL_DATA_SIZE },
+				{ GLOVES_OFFSET, GLOVES_OFFSET + GLOVE_DATA_SIZE }
+		};
+		int pos = 0;
+		for (int[] r : regions) {
+			for (int i = r[0]; i < r[1]; ) {
+				if (base[i] == target[i]) {
+					i++;
+					continue;
+				}
+				int end = i;
+				while (end < r[1] && base[end] != target[end]) {
+					end++;
+				}
+				if (i > pos) {
+					writeVarInt(out, ((long) (i - pos - 1) << 2) | BPS_SOURCE_READ);
+				}
+				writeVarInt(out, ((long) (end - i - 1) << 2) | BPS_TARGET_READ);
+				out.write(target, i, end - i);
+				pos = i = end;
+			}
+		}
+		if (pos < target.length) {
+			writeVarInt(out, ((long) (target.length - pos - 1) << 2) | BPS_SOURCE_READ);
+		}
+
+		writeInt(out, crc(base, 0, base.length));
+		writeInt(out, crc(target, 0, target.length));
+		byte[] ret = out.toByteArray();
+		writeInt(out, crc(ret, 0, ret.length));
+		return out.toByteArray();
+	}
+
+	/**
+	 * Applies a BPS patch to a base ROM.
+	 * @param bps
+	 * @param source - base ROM data
+	 * @return The patched ROM
+	 * @throws IllegalArgumentException if the patch is malformed or made for a different ROM
+	 */
+	public static byte[] applyBPS(byte[] bps, byte[] source) {
+		if (bps.length < BPS_HEADER.length + BPS_FOOTER_SIZE
+				|| !Arrays.equals(Arrays.copyOf(bps, BPS_HEADER.length), BPS_HEADER)) {
+			throw new IllegalArgumentException("Not a BPS patch");
+		}
+
+		ByteBuffer footer = ByteBuffer.wrap(bps, bps.length - BPS_FOOTER_SIZE, BPS_FOOTER_SIZE)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		int sourceCRC = footer.getInt();
+		int targetCRC = footer.getInt();
+		int patchCRC = footer.getInt();
+		if (crc(bps, 0, bps.length - 4) != patchCRC) {
+			throw new IllegalArgumentException("BPS patch is corrupted");
+		}
+		if (crc(source, 0, source.length) != sourceCRC) {
+			throw new IllegalArgumentException("BPS patch was made for a different ROM");
+		}
+
+		ByteBuffer buff = ByteBuffer.wrap(bps, 0, bps.length - BPS_FOOTER_SIZE);
+		buff.position(BPS_HEADER.length);
+		long sourceSize;
+		long targetSize;
+		long metadataSize;
+		try {
+			sourceSize = readVarInt(buff);
+			targetSize = readVarInt(buff);
+			metadataSize = readVarInt(buff);
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("BPS patch is corrupted", e);
+		}
+		if (sourceSize != source.length || targetSize < 0 || targetSize > Integer.MAX_VALUE
+				|| metadataSize < 0 || metadataSize > buff.remaining()) {
+			throw new IllegalArgumentException("BPS patch is corrupted");
+		}
+		buff.position(buff.position() + (int) metadataSize);
+
+		byte[] target = new byte[(int) targetSize];
+		int out = 0;
+		int sourceRel = 0;
+		int targetRel = 0;
+		try {
+			while (buff.hasRemaining()) {
+				long data = readVarInt(buff);
+				int len = (int) (data >>> 2) + 1;
+				switch ((int) (data & 3)) {
+					case BPS_SOURCE_READ :
+						System.arraycopy(source, out, target, out, len);
+						break;
+					case BPS_TARGET_READ :
+						buff.get(target, out, len);
+						break;
+					case BPS_SOURCE_COPY :
+						sourceRel += readSignedVarInt(buff);
+						System.arraycopy(source, sourceRel, target, out, len);
+						sourceRel += len;
+						break;
+					case BPS_TARGET_COPY :
+						targetRel += readSignedVarInt(buff);
+						for (int i = 0; i < len; i++) { // can overlap; copy forwards one at a time
+							target[out + i] = target[targetRel++];
+						}
+						break;
+				}
+				out += len;
+			}
+		} catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+			throw new IllegalArgumentException("BPS patch is corrupted", e);
+		}
+
+		if (out != target.length || crc(target, 0, target.length) != targetCRC) {
+			throw new IllegalArgumentException("BPS patch produced the wrong ROM");
+		}
+		return target;
+	}
+
+	private static void writeVarInt(ByteArrayOutputStream out, long data) {
+		while (true) {
+			int x = (int) (data & 0x7F);
+			data >>>= 7;
+			if (data == 0) {
+				out.write(0x80 | x);
+				break;
+			}
+			out.write(x);
+			data--;
+		}
+	}
+
+	private static long readVarInt(ByteBuffer buff) {
+		long data = 0;
+		long shift = 1;
+		while (true) {
+			int x = buff.get() & 0xFF;
+			data += (x & 0x7F) * shift;
+			if ((x & 0x80) != 0) {
+				return data;
+			}
+			shift <<= 7;
+			data += shift;
+		}
+	}
+
+	private static int readSignedVarInt(ByteBuffer buff) {
+		long data = readVarInt(buff);
+		int offset = (int) (data >>> 1);
+		return (data & 1) != 0 ? -offset : offset;
+	}
+
+	private static void writeInt(ByteArrayOutputStream out, int v) {
+		out.write(v);
+		out.write(v >> 8);
+		out.write(v >> 16);
+		out.write(v >> 24);
+	}
+
+	private static int crc(byte[] data, int off, int len) {
+		CRC32 crc = new CRC32();
+		crc.update(data, off, len);
+		return (int) crc.getValue();
+	}
+}
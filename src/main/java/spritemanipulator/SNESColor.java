@@ -0,0 +1,154 @@
+package spritemanipulator;
+
+/**
+ * Conversions for SNES colors packed into 15 bits as {@code 0BBBBBGGGGGRRRRR}.
+ * <br><br>
+ * This is the same 5:5:5 format used in palette data, read as a little endian {@code short},
+ * so colors can be moved between ROMs, {@code ZSPR} files and images with shifts and masks.
+ * Palettes of these colors are kept as {@code short[]}.
+ * <br><br>
+ * Converting a 24-bit color rounds each channel down to the nearest 8,
+ * the same as {@link SpriteManipulator#toRGB9(int, int, int)}.
+ *
+ * @author fatmanspanda
+ */
+public final class SNESColor {
+	// class constants
+	public static final int MASK = 0x7FFF;
+	public static final int COLOR_COUNT = 1 << 15;
+
+	/**
+	 * Prevent instantiation
+	 */
+	private SNESColor() {}
+
+	/**
+	 * Packs 8-bit channels into a 15-bit color.
+	 * @param r
+	 * @param g
+	 * @param b
+	 */
+	public static int fromRGB(int r, int g, int b) {
+		return ((r >> 3) & 0x1F) | (((g >> 3) & 0x1F) << 5) | (((b >> 3) & 0x1F) << 10);
+	}
+
+	/**
+	 * Packs an {@code 0xAARRGGBB} color into a 15-bit color. Alpha is ignored.
+	 * @param argb
+	 */
+	public static int fromARGB(int argb) {
+		return ((argb >> 19) & 0x1F) | ((argb >> 6) & 0x3E0) | ((argb << 7) & 0x7C00);
+	}
+
+	/**
+	 * Unpacks a 15-bit color into an opaque {@code 0xAARRGGBB} color.
+	 * @param c
+	 */
+	public static int toARGB(int c) {
+		return 0xFF000000 | (red(c) << 16) | (green(c) << 8) | blue(c);
+	}
+
+	/**
+	 * @return The red channel of a 15-bit color, as 8 bits
+	 * @param c
+	 */
+	public static int red(int c) {
+		return (c & 0x1F) << 3;
+	}
+
+	/**
+	 * @return The green channel of a 15-bit color, as 8 bits
+	 * @param c
+	 */
+	public static int green(int c) {
+		return ((c >> 5) & 0x1F) << 3;
+	}
+
+	/**
+	 * @return The blue channel of a 15-bit color, as 8 bits
+	 * @param c
+	 */
+	public static int blue(int c) {
+		return ((c >> 10) & 0x1F) << 3;
+	}
+
+	/**
+	 * Reads a 15-bit color from 2 bytes of little endian 5:5:5 data.
+	 * @param lo
+	 * @param hi
+	 */
+	public static int fromBytes(byte lo, byte hi) {
+		return ((hi & 0xFF) << 8 | (lo & 0xFF)) & MASK;
+	}
+
+	/**
+	 * Reads a 15-bit color from 5:5:5 data.
+	 * @param data
+	 * @param off - index of the low byte
+	 */
+	public static int fromBytes(byte[] data, int off) {
+		return fromBytes(data[off], data[off+1]);
+	}
+
+	/**
+	 * Writes a 15-bit color as 2 bytes of little endian 5:5:5 data.
+	 * @param c
+	 * @param data
+	 * @param off - index of the low byte
+	 */
+	public static void toBytes(int c, byte[] data, int off) {
+		data[off] = (byte) c;
+		data[off+1] = (byte) (c >> 8);
+	}
+
+	/**
+	 * Unpacks a 15-bit color into an {R,G,B} array, like {@link SpriteManipulator#getRGB(byte, byte)}.
+	 * @param c
+	 */
+	public static byte[] toRGBArray(int c) {
+		return new byte[] { (byte) red(c), (byte) green(c), (byte) blue(c) };
+	}
+
+	/**
+	 * Packs a decimal {@code RRRGGGBBB} color into a 15-bit color.
+	 * @param rgb9
+	 */
+	public static int fromRGB9(int rgb9) {
+		int r = rgb9 / 1000000;
+		int g = (rgb9 % 1000000) / 1000;
+		int b = rgb9 % 1000;
+		return fromRGB(r, g, b);
+	}
+
+	/**
+	 * Unpacks a 15-bit color into a decimal {@code RRRGGGBBB} color.
+	 * @param c
+	 */
+	public static int toRGB9(int c) {
+		return (red(c) * 1000000) + (green(c) * 1000) + blue(c);
+	}
+
+	/**
+	 * Packs every color of a decimal {@code RRRGGGBBB} palette.
+	 * @param pal
+	 */
+	public static short[] fromRGB9(int[] pal) {
+		short[] ret = new short[pal.length];
+		for (int i = 0; i < pal.length; i++) {
+			ret[i] = (short) fromRGB9(pal[i]);
+		}
+		return ret;
+	}
+
+	/**
+	 * Unpacks every color of a 15-bit palette into decimal {@code RRRGGGBBB}.
+	 * @param pal
+	 */
+	public static int[] toRGB9(short[] pal) {
+		int[] ret = new int[pal.length];
+		for (int i = 0; i < pal.length; i++) {
+			ret[i] = toRGB9(pal[i]);
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,376 @@
+package spritemanipulator;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A single file holding many {@code ZSPR} files, read through a memory mapping.
+ * <br><br>
+ * Layout, all little endian:
+ * <ul>
+ * <li>Header: {@code ZSPA}, version byte, 3 reserved bytes</li>
+ * <li>Each entry's {@code ZSPR} data, stored as is or DEFLATE compressed</li>
+ * <li>Directory: per entry, data offset (8), stored length (4), original length (4),
+ * flags (1), CRC32 of the original data (4),
+ * then sprite name and author name as UTF-8 with a 2 byte length</li>
+ * <li>Trailer: directory offset (8), entry count (4), {@code ZSPA}</li>
+ * </ul>
+ * The directory is read once when the archive is opened,
+ * so any entry can then be found without scanning the file.
+ * Archives are written in one pass by a {@link Writer}.
+ *
+ * @author fatmanspanda
+ */
+public final class SpriteArchive {
+	// class constants
+	public static final String EXTENSION = "zspa";
+	private static final byte[] FLAG = { 'Z', 'S', 'P', 'A' };
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 8;
+	private static final int TRAILER_SIZE = 16;
+	private static final int DIR_ENTRY_SIZE = 21; // offset, lengths, flags and CRC32
+	private static final int MIN_ENTRY_SIZE = DIR_ENTRY_SIZE + 2 + 2; // with 2 empty names
+	private static final int FLAG_DEFLATE = 1;
+	private static final int MAX_DEFLATE_RATIO = 1032; // most DEFLATE can shrink anything
+
+	// local vars
+	private final ByteBuffer archive;
+	private final long[] offsets;
+	private final int[] storedLengths;
+	private final int[] lengths;
+	private final byte[] flags;
+	private final int[] crcs;
+	private final String[] names;
+	private final String[] authors;
+	private final Map<String, Integer> byName;
+
+	private SpriteArchive(ByteBuffer archive) throws ZSPRFormatException {
+		this.archive = archive;
+		int size = archive.limit();
+		try {
+			for (int i = 0; i < FLAG.length; i++) {
+				if (archive.get(i) != FLAG[i] || archive.get(size - FLAG.length + i) != FLAG[i]) {
+					throw new ZSPRFormatException("Not a sprite archive");
+				}
+			}
+			if (archive.get(FLAG.length) != VERSION) {
+				throw new ZSPRFormatException("Unsupported sprite archive version");
+			}
+
+			int count = archive.getInt(size - TRAILER_SIZE + 8);
+			long dirOffset = archive.getLong(size - TRAILER_SIZE);
+			if (dirOffset < HEADER_SIZE || dirOffset > size - TRAILER_SIZE
+					|| count < 0 || count > (size - TRAILER_SIZE - dirOffset) / MIN_ENTRY_SIZE) {
+				throw new ZSPRFormatException("Sprite archive directory is corrupted");
+			}
+
+			offsets = new long[count];
+			storedLengths = new int[count];
+			lengths = new int[count];
+			flags = new byte[count];
+			crcs = new int[count];
+			names = new String[count];
+			authors = new String[count];
+			byName = new HashMap<String, Integer>(count * 2);
+
+			ByteBuffer dir = archive.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+			dir.position((int) dirOffset);
+			dir.limit(size - TRAILER_SIZE);
+			for (int i = 0; i < count; i++) {
+				offsets[i] = dir.getLong();
+				storedLengths[i] = dir.getInt();
+				lengths[i] = dir.getInt();
+				flags[i] = dir.get();
+				crcs[i] = dir.getInt();
+				names[i] = getString(dir);
+				authors[i] = getString(dir);
+				if (offsets[i] < HEADER_SIZE || storedLengths[i] < 0
+						|| offsets[i] + storedLengths[i] > dirOffset
+						|| !validLength(lengths[i], storedLengths[i], flags[i])) {
+					throw new ZSPRFormatException("Sprite archive directory is corrupted");
+				}
+				byName.putIfAbsent(names[i], i);
+			}
+		} catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+			throw new ZSPRFormatException("Sprite archive is truncated");
+		}
+	}
+
+	/**
+	 * Checks that an entry's original length can be allocated and could come from its stored data,
+	 * so a corrupted directory can't ask for a huge or negative array.
+	 */
+	private static boolean validLength(int length, int storedLength, byte flag) {
+		if ((flag & FLAG_DEFLATE) == 0) {
+			return length == storedLength;
+		}
+		return length >= 0 && length <= (long) storedLength * MAX_DEFLATE_RATIO;
+	}
+
+	/**
+	 * Maps an archive into memory and reads its directory.
+	 * The whole file is mapped as one buffer, so archives must be under 2GB.
+	 * @param path
+	 * @throws IOException
+	 * @throws ZSPRFormatException if the file isn't a valid archive or is 2GB or larger
+	 */
+	public static SpriteArchive open(Path path) throws IOException, ZSPRFormatException {
+		try (FileChannel fc = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (fc.size() < HEADER_SIZE + TRAILER_SIZE) {
+				throw new ZSPRFormatException("Not a sprite archive");
+			}
+			if (fc.size() > Integer.MAX_VALUE) {
+				throw new ZSPRFormatException(String.format(
+						"Sprite archive is too large to map (%d bytes; at most %d)",
+						fc.size(), Integer.MAX_VALUE));
+			}
+			ByteBuffer map = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+			return new SpriteArchive(map.order(ByteOrder.LITTLE_ENDIAN));
+		}
+	}
+
+	/**
+	 * @return Number of sprites in the archive
+	 */
+	public int size() {
+		return offsets.length;
+	}
+
+	/**
+	 * @return Sprite name of entry {@code i}, from the directory
+	 */
+	public String getSpriteName(int i) {
+		return names[i];
+	}
+
+	/**
+	 * @return Author name of entry {@code i}, from the directory
+	 */
+	public String getAuthorName(int i) {
+		return authors[i];
+	}
+
+	/**
+	 * @return Index of the first entry with this sprite name, or {@code -1}
+	 */
+	public int indexOf(String spriteName) {
+		Integer ret = byName.get(spriteName);
+		return ret == null ? -1 : ret;
+	}
+
+	/**
+	 * @return {@code true} if entry {@code i} is stored compressed
+	 */
+	public boolean isCompressed(int i) {
+		return (flags[i] & FLAG_DEFLATE) != 0;
+	}
+
+	/**
+	 * Gets the {@code ZSPR} data of an entry after checking its CRC32.
+	 * Uncompressed entries are a read-only slice of the mapping; nothing is copied.
+	 * @param i
+	 * @throws ZSPRFormatException if the data is corrupted
+	 */
+	public ByteBuffer getData(int i) throws ZSPRFormatException {
+		ByteBuffer stored = archive.asReadOnlyBuffer();
+		stored.limit((int) offsets[i] + storedLengths[i]).position((int) offsets[i]);
+		stored = stored.slice();
+
+		ByteBuffer ret;
+		if (isCompressed(i)) {
+			byte[] in = new byte[storedLengths[i]];
+			stored.get(in);
+			byte[] out = new byte[lengths[i]];
+			Inflater inf = new Inflater();
+			try {
+				inf.setInput(in);
+				if (inf.inflate(out) != out.length || !inf.finished()) {
+					throw new ZSPRFormatException("Sprite archive entry is corrupted");
+				}
+			} catch (DataFormatException e) {
+				throw new ZSPRFormatException("Sprite archive entry is corrupted");
+			} finally {
+				inf.end();
+			}
+			ret = ByteBuffer.wrap(out).asReadOnlyBuffer();
+		} else {
+			ret = stored;
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(ret.duplicate());
+		if ((int) crc.getValue() != crcs[i]) {
+			throw new ZSPRFormatException("Sprite archive entry is corrupted");
+		}
+		return ret;
+	}
+
+	/**
+	 * Reads entry {@code i} as a {@code ZSPRFile}.
+	 * @param i
+	 * @throws ZSPRFormatException
+	 */
+	public ZSPRFile get(int i) throws ZSPRFormatException {
+		return ZSPRFile.readFrom(getData(i));
+	}
+
+	/**
+	 * Views entry {@code i}; uncompressed entries are not copied.
+	 * @param i
+	 * @throws ZSPRFormatException
+	 */
+	public ZSPRView getView(int i) throws ZSPRFormatException {
+		return new ZSPRView(getData(i), false);
+	}
+
+	private static String getString(ByteBuffer buff) {
+		byte[] b = new byte[Short.toUnsignedInt(buff.getShort())];
+		buff.get(b);
+		return new String(b, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes an archive one sprite at a time.
+	 * Sprite data is written out as it is added; only the directory is held until {@link #close()}.
+	 */
+	public static final class Writer implements Closeable {
+		// local vars
+		private final OutputStream out;
+		private final ByteArrayOutputStream dir = new ByteArrayOutputStream();
+		private final ByteBuffer dirEntry = ByteBuffer.allocate(DIR_ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		private long pos;
+		private int count;
+		private boolean closed;
+
+		/**
+		 * Creates an archive file, replacing any existing one.
+		 * @param path
+		 * @throws IOException
+		 */
+		public Writer(Path path) throws IOException {
+			this(Files.newOutputStream(path));
+		}
+
+		/**
+		 * Writes an archive to a stream. The stream is closed with this writer.
+		 * @param out
+		 * @throws IOException
+		 */
+		public Writer(OutputStream out) throws IOException {
+			this.out = new BufferedOutputStream(out);
+			byte[] header = new byte[HEADER_SIZE];
+			System.arraycopy(FLAG, 0, header, 0, FLAG.length);
+			header[FLAG.length] = VERSION;
+			this.out.write(header);
+			pos = HEADER_SIZE;
+		}
+
+		/**
+		 * Adds a sprite to the archive.
+		 * @param spr
+		 * @param compress - {@code true} to store it DEFLATE compressed
+		 * @throws IOException if it can't be written or would make the archive too large to open
+		 */
+		public void add(ZSPRFile spr, boolean compress) throws IOException {
+			byte[] data = spr.getDataStream();
+			CRC32 crc = new CRC32();
+			crc.update(data);
+
+			byte[] stored = data;
+			byte flag = 0;
+			if (compress) {
+				byte[] packed = deflate(data);
+				// blank sprites shrink a lot, but noise doesn't
+				if (packed.length < data.length) {
+					stored = packed;
+					flag = FLAG_DEFLATE;
+				}
+			}
+
+			byte[] name = utf8(spr.getSpriteName());
+			byte[] author = utf8(spr.getAuthorName());
+			long end = pos + stored.length + dir.size() + dirEntry.capacity()
+					+ 2 + name.length + 2 + author.length + TRAILER_SIZE;
+			if (end > Integer.MAX_VALUE) {
+				throw new IOException("Sprite archive would be too large to open (2GB or more)");
+			}
+
+			dirEntry.clear();
+			dirEntry.putLong(pos)
+					.putInt(stored.length)
+					.putInt(data.length)
+					.put(flag)
+					.putInt((int) crc.getValue());
+			dir.write(dirEntry.array(), 0, dirEntry.position());
+			putString(name);
+			putString(author);
+
+			out.write(stored);
+			pos += stored.length;
+			count++;
+		}
+
+		private byte[] deflate(byte[] data) {
+			deflater.reset();
+			deflater.setInput(data);
+			deflater.finish();
+			ByteArrayOutputStream ret = new ByteArrayOutputStream(data.length / 4);
+			byte[] buff = new byte[4096];
+			while (!deflater.finished()) {
+				ret.write(buff, 0, deflater.deflate(buff));
+			}
+			return ret.toByteArray();
+		}
+
+		private static byte[] utf8(String s) {
+			byte[] b = (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+			return b.length > 0xFFFF ? Arrays.copyOf(b, 0xFFFF) : b;
+		}
+
+		private void putString(byte[] b) {
+			dir.write(b.length);
+			dir.write(b.length >> 8);
+			dir.write(b, 0, b.length);
+		}
+
+		/**
+		 * Writes the directory and trailer, then closes the stream.
+		 * @throws IOException
+		 */
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			try {
+				dir.writeTo(out);
+				ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+				trailer.putLong(pos).putInt(count).put(FLAG);
+				out.write(trailer.array());
+			} finally {
+				deflater.end();
+				out.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,236 @@
+package spritemanipulator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static spritemanipulator.SpriteManipulator.*;
+
+/**
+ * Differences between two versions of a sprite:
+ * which 32 byte blocks, palette colors and glove colors changed.
+ * <br><br>
+ * Blocks are compared as 4 little endian {@code long}s each,
+ * so identical sprites cost one pass of 3,584 word compares.
+ * When only the new version is still around, the old one can be given as
+ * 64-bit block hashes from {@link #blockHashes(byte[])} instead.
+ * <br><br>
+ * The changes can be used to decode only the changed tiles with {@link #decodeChanged(byte[], TileMap)}
+ * or write only the changed bytes to a ROM with {@link #patchRom(Path, ZSPRFile)}.
+ *
+ * @author fatmanspanda
+ */
+public final class SpriteDiff {
+	// class constants
+	private static final int WORDS_PER_BLOCK = SPRITE_BLOCK_SIZE / Long.BYTES;
+	private static final int PAL_COLOR_COUNT = PAL_DATA_SIZE / 2;
+	private static final int GLOVE_COLOR_COUNT = GLOVE_DATA_SIZE / 2;
+	private static final int[] NONE = new int[0];
+	private static final int[] ALL_GLOVES = { 0, 1 };
+
+	// local vars
+	private final int[] blocks;
+	private final int[] colors;
+	private final int[] gloves;
+	private final boolean fromHadGloves;
+
+	private SpriteDiff(int[] blocks, int[] colors, int[] gloves, boolean fromHadGloves) {
+		this.blocks = blocks;
+		this.colors = colors;
+		this.gloves = gloves;
+		this.fromHadGloves = fromHadGloves;
+	}
+
+	/**
+	 * Compares every part of two sprites.
+	 * @param from - old version
+	 * @param to - new version
+	 */
+	public static SpriteDiff compare(ZSPRFile from, ZSPRFile to) {
+		return new SpriteDiff(
+				changedBlocks(from.getSpriteData(), to.getSpriteData()),
+				changedColors(from.getPalData(), to.getPalData(), PAL_COLOR_COUNT),
+				changedColors(from.getGlovesData(), to.getGlovesData(), GLOVE_COLOR_COUNT),
+				hasGloves(from.getGlovesData()));
+	}
+
+	/**
+	 * Compares the sprite data of two sprites only.
+	 * @param from - old 4BPP sprite data
+	 * @param to - new 4BPP sprite data
+	 */
+	public static SpriteDiff compare(byte[] from, byte[] to) {
+		return new SpriteDiff(changedBlocks(from, to), NONE, NONE, true);
+	}
+
+	/**
+	 * Compares sprite data against the block hashes of an old version.
+	 * Matching hashes are trusted to mean matching blocks.
+	 * @param from - hashes of the old version, from {@link #blockHashes(byte[])}
+	 * @param to - new 4BPP sprite data
+	 */
+	public static SpriteDiff compare(long[] from, byte[] to) {
+		long[] hashes = blockHashes(to);
+		int[] ret = new int[SPRITE_BLOCK_COUNT];
+		int count = 0;
+		for (int b = 0; b < SPRITE_BLOCK_COUNT; b++) {
+			if (from[b] != hashes[b]) {
+				ret[count++] = b;
+			}
+		}
+		return new SpriteDiff(Arrays.copyOf(ret, count), NONE, NONE, true);
+	}
+
+	/**
+	 * Hashes each 32 byte block of sprite data into 64 bits.
+	 * @param sprite - 4BPP sprite data
+	 */
+	public static long[] blockHashes(byte[] sprite) {
+		ByteBuffer buff = ByteBuffer.wrap(sprite).order(ByteOrder.LITTLE_ENDIAN);
+		long[] ret = new long[SPRITE_BLOCK_COUNT];
+		for (int b = 0, pos = 0; b < SPRITE_BLOCK_COUNT; b++) {
+			long h = 0;
+			for (int w = 0; w < WORDS_PER_BLOCK; w++, pos += Long.BYTES) {
+				h = mix(h ^ buff.getLong(pos));
+			}
+			ret[b] = h;
+		}
+		return ret;
+	}
+
+	/**
+	 * Finalizer from SplitMix64; spreads every input bit over the whole output.
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	private static int[] changedBlocks(byte[] from, byte[] to) {
+		ByteBuffer a = ByteBuffer.wrap(from).order(ByteOrder.LITTLE_ENDIAN);
+		ByteBuffer b = ByteBuffer.wrap(to).order(ByteOrder.LITTLE_ENDIAN);
+		int[] ret = new int[SPRITE_BLOCK_COUNT];
+		int count = 0;
+
+		for (int blk = 0, pos = 0; blk < SPRITE_BLOCK_COUNT; blk++, pos += SPRITE_BLOCK_SIZE) {
+			for (int w = 0; w < SPRITE_BLOCK_SIZE; w += Long.BYTES) {
+				if (a.getLong(pos + w) != b.getLong(pos + w)) {
+					ret[count++] = blk;
+					break;
+				}
+			}
+		}
+
+		return count == 0 ? NONE : Arrays.copyOf(ret, count);
+	}
+
+	private static int[] changedColors(byte[] from, byte[] to, int colorCount) {
+		int[] ret = new int[colorCount];
+		int count = 0;
+		for (int i = 0; i < colorCount; i++) {
+			if (from[i*2] != to[i*2] || from[i*2+1] != to[i*2+1]) {
+				ret[count++] = i;
+			}
+		}
+		return count == 0 ? NONE : Arrays.copyOf(ret, count);
+	}
+
+	/**
+	 * @return {@code true} if nothing compared has changed
+	 */
+	public boolean isEmpty() {
+		return blocks.length == 0 && colors.length == 0 && gloves.length == 0;
+	}
+
+	/**
+	 * @return Indices of changed blocks, in ascending order
+	 */
+	public int[] getChangedBlocks() {
+		return blocks.clone();
+	}
+
+	/**
+	 * @return Indices of changed colors in the palette data, in ascending order;
+	 * color {@code i} is stored at bytes {@code 2i} and {@code 2i+1}
+	 */
+	public int[] getChangedColors() {
+		return colors.clone();
+	}
+
+	/**
+	 * @return Indices of changed glove colors: {@code 0} for power gloves, {@code 1} for titan's mitts
+	 */
+	public int[] getChangedGloves() {
+		return gloves.clone();
+	}
+
+	/**
+	 * @return {@code true} if any glove color changed
+	 */
+	public boolean glovesChanged() {
+		return gloves.length != 0;
+	}
+
+	/**
+	 * Decodes only the changed blocks into an index map of the old version,
+	 * bringing it up to date.
+	 * @param sprite - new 4BPP sprite data
+	 * @param map - index map of the old version
+	 */
+	public void decodeChanged(byte[] sprite, TileMap map) {
+		decodeBlocks(sprite, blocks, map);
+	}
+
+	/**
+	 * Writes only the changed parts of a sprite to a ROM that already holds the old version.
+	 * Neighboring changed blocks are written together.
+	 * As with {@link SpriteManipulator#patchRom(Path, ZSPRFile, boolean)},
+	 * gloves are only written when defined.
+	 * If the old version had no gloves, the ROM still holds whatever was there before it,
+	 * so both glove colors are written.
+	 * @param rom
+	 * @param to - new version, as compared
+	 * @throws IOException if the ROM can't be written or is too small to hold a sprite
+	 */
+	public void patchRom(Path rom, ZSPRFile to) throws IOException {
+		try (FileChannel fc = FileChannel.open(rom, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			checkRomSize(fc);
+
+			writeRuns(fc, to.getSpriteData(), blocks, SPRITE_BLOCK_SIZE, SPRITE_OFFSET);
+			writeRuns(fc, to.getPalData(), colors, 2, PAL_OFFSET);
+			byte[] glovesData = to.getGlovesData();
+			if (hasGloves(glovesData)) {
+				int[] changed = fromHadGloves ? gloves : ALL_GLOVES;
+				writeRuns(fc, glovesData, changed, 2, GLOVES_OFFSET);
+			}
+		}
+	}
+
+	/**
+	 * Writes runs of consecutive changed units with a single positional write each.
+	 */
+	private static void writeRuns(FileChannel fc, byte[] data, int[] units, int unitSize, long offset)
+			throws IOException {
+		for (int i = 0; i < units.length; ) {
+			int start = units[i];
+			int end = start + 1;
+			for (i++; i < units.length && units[i] == end; i++) {
+				end++;
+			}
+
+			writeFully(fc, ByteBuffer.wrap(data, start * unitSize, (end - start) * unitSize),
+					offset + start * unitSize);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d blocks, %d colors, %d gloves changed",
+				blocks.length, colors.length, gloves.length);
+	}
+}
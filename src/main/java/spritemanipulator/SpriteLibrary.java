@@ -0,0 +1,429 @@
+package spritemanipulator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static spritemanipulator.SpriteManipulator.*;
+
+/**
+ * Index of every {@code ZSPR} file in a directory tree, kept in a binary index file.
+ * <br><br>
+ * {@link #refresh()} scans the tree in parallel and only reads files
+ * whose size or modification time differ from the index.
+ * Entries hold each sprite's names, stored checksum and a SHA-256 hash of the file,
+ * but never its data.
+ * Files that aren't valid sprites are kept in the index too, so they aren't read again until they change,
+ * but they are never returned.
+ *
+ * @author fatmanspanda
+ */
+public final class SpriteLibrary implements Iterable<SpriteLibrary.Entry> {
+	// class constants
+	private static final byte[] INDEX_FLAG = { 'Z', 'L', 'I', 'B' };
+	private static final int INDEX_VERSION = 3;
+	private static final String HASH_ALGORITHM = "SHA-256";
+	private static final int HASH_SIZE = 32;
+
+	// local vars
+	private final Path root;
+	private final Path indexFile;
+	private volatile Map<String, Entry> scanned = Collections.emptyMap(); // includes invalid files
+	private volatile Map<String, Entry> entries = Collections.emptyMap();
+	private volatile Map<String, List<Entry>> byName = Collections.emptyMap();
+	private volatile Map<String, List<Entry>> byAuthor = Collections.emptyMap();
+
+	/**
+	 * Creates a library for a directory, loading its index file if there is one.
+	 * @param root - directory to scan
+	 * @param indexFile - where the index is kept
+	 * @throws IOException if the index file exists but can't be read
+	 */
+	public SpriteLibrary(Path root, Path indexFile) throws IOException {
+		this.root = root.toAbsolutePath().normalize();
+		this.indexFile = indexFile;
+		if (Files.isRegularFile(indexFile)) {
+			setEntries(readIndex());
+		}
+	}
+
+	/**
+	 * Scans the directory, reads new or changed files and saves the index.
+	 * Files and directories that can't be read are skipped.
+	 * @throws IOException if the directory itself can't be read
+	 */
+	public synchronized void refresh() throws IOException {
+		final Map<String, Entry> old = scanned;
+		List<Path> files = findFiles();
+
+		Map<String, Entry> found = files.parallelStream()
+				.map(p -> scan(p, old))
+				.filter(Objects::nonNull)
+				.collect(Collectors.toMap(e -> e.key, e -> e, (a, b) -> a, TreeMap::new));
+
+		setEntries(found);
+		writeIndex();
+	}
+
+	/**
+	 * Lists every {@code ZSPR} file under the root, skipping anything that can't be read.
+	 */
+	private List<Path> findFiles() throws IOException {
+		final List<Path> ret = new ArrayList<Path>();
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path p, BasicFileAttributes attr) {
+				if (attr.isRegularFile() && testFileType(p.toString(), ZSPRFile.EXTENSION)) {
+					ret.add(p);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path p, IOException e) throws IOException {
+				if (p.equals(root)) {
+					throw e; // don't mistake a missing library for an empty one
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		return ret;
+	}
+
+	/**
+	 * @return Every entry of the library, sorted by path
+	 */
+	public Collection<Entry> getEntries() {
+		return entries.values();
+	}
+
+	@Override
+	public Iterator<Entry> iterator() {
+		return getEntries().iterator();
+	}
+
+	/**
+	 * @return Number of sprites in the library
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @param path - file in the library
+	 * @return The entry for {@code path}, or {@code null} if it isn't indexed
+	 */
+	public Entry get(Path path) {
+		return entries.get(keyOf(path.toAbsolutePath().normalize()));
+	}
+
+	/**
+	 * Finds sprites by name, ignoring case.
+	 * @param name
+	 */
+	public List<Entry> findByName(String name) {
+		return find(byName, name);
+	}
+
+	/**
+	 * Finds sprites by author, ignoring case.
+	 * @param author
+	 */
+	public List<Entry> findByAuthor(String author) {
+		return find(byAuthor, author);
+	}
+
+	private static List<Entry> find(Map<String, List<Entry>> map, String s) {
+		List<Entry> ret = map.get(s.toLowerCase(Locale.ROOT));
+		return ret == null ? Collections.<Entry>emptyList() : Collections.unmodifiableList(ret);
+	}
+
+	/**
+	 * Reuses the old entry of an unchanged file, or reads it again.
+	 * @return An invalid entry if the file isn't a valid sprite,
+	 * or {@code null} if it can't be read, such as when it was deleted during the scan
+	 */
+	private Entry scan(Path p, Map<String, Entry> old) {
+		try {
+			BasicFileAttributes attr = Files.readAttributes(p, BasicFileAttributes.class);
+			long size = attr.size();
+			long modified = attr.lastModifiedTime().toMillis();
+			String key = keyOf(p);
+
+			Entry e = old.get(key);
+			if (e != null && e.size == size && e.modified == modified) {
+				return e;
+			}
+
+			byte[] data = Files.readAllBytes(p);
+			ZSPRView v;
+			try {
+				v = new ZSPRView(ByteBuffer.wrap(data), true);
+			} catch (ZSPRFormatException ex) {
+				return Entry.invalid(key, p, size, modified);
+			}
+
+			return new Entry(key, p, size, modified,
+					v.getSpriteName(), v.getAuthorName(), v.getStoredChecksum(), hash(data));
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Relative path with {@code /} separators, so the index can move with the directory.
+	 */
+	private String keyOf(Path p) {
+		return root.relativize(p).toString().replace(p.getFileSystem().getSeparator(), "/");
+	}
+
+	private void setEntries(Map<String, Entry> map) {
+		Map<String, Entry> valid = new TreeMap<String, Entry>();
+		Map<String, List<Entry>> names = new HashMap<String, List<Entry>>();
+		Map<String, List<Entry>> authors = new HashMap<String, List<Entry>>();
+		for (Entry e : map.values()) {
+			if (!e.valid) {
+				continue;
+			}
+			valid.put(e.key, e);
+			names.computeIfAbsent(e.spriteName.toLowerCase(Locale.ROOT),
+					k -> new ArrayList<Entry>()).add(e);
+			authors.computeIfAbsent(e.authorName.toLowerCase(Locale.ROOT),
+					k -> new ArrayList<Entry>()).add(e);
+		}
+
+		byName = names;
+		byAuthor = authors;
+		entries = Collections.unmodifiableMap(valid);
+		scanned = map;
+	}
+
+	/**
+	 * Reads the index file. An index of another format is ignored and rebuilt on the next refresh.
+	 */
+	private Map<String, Entry> readIndex() throws IOException {
+		Map<String, Entry> ret = new TreeMap<String, Entry>();
+		long indexSize = Files.size(indexFile);
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(Files.newInputStream(indexFile)))) {
+			byte[] flag = new byte[INDEX_FLAG.length];
+			in.readFully(flag);
+			if (!Arrays.equals(flag, INDEX_FLAG) || in.readUnsignedByte() != INDEX_VERSION) {
+				return ret; // unknown index; rebuild it
+			}
+
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String key = readString(in, indexSize);
+				long size = in.readLong();
+				long modified = in.readLong();
+				if (!in.readBoolean()) {
+					ret.put(key, Entry.invalid(key, root.resolve(key), size, modified));
+					continue;
+				}
+				String name = readString(in, indexSize);
+				String author = readString(in, indexSize);
+				int checksum = in.readUnsignedShort();
+				byte[] hash = new byte[HASH_SIZE];
+				in.readFully(hash);
+				ret.put(key, new Entry(key, root.resolve(key), size, modified,
+						name, author, checksum, hash));
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Writes the index to a temporary file and moves it over the old one.
+	 */
+	private void writeIndex() throws IOException {
+		Path dir = indexFile.toAbsolutePath().getParent();
+		Files.createDirectories(dir);
+		Path temp = Files.createTempFile(dir, indexFile.getFileName().toString(), ".tmp");
+
+		try {
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(temp)))) {
+				out.write(INDEX_FLAG);
+				out.writeByte(INDEX_VERSION);
+				out.writeInt(scanned.size());
+				for (Entry e : scanned.values()) {
+					writeString(out, e.key);
+					out.writeLong(e.size);
+					out.writeLong(e.modified);
+					out.writeBoolean(e.valid);
+					if (!e.valid) {
+						continue;
+					}
+					writeString(out, e.spriteName);
+					writeString(out, e.authorName);
+					out.writeShort(e.checksum);
+					out.write(e.hash);
+				}
+			}
+			Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Writes a string as UTF-8 with a 4 byte length, since names can be longer than {@code writeUTF} allows.
+	 */
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] b = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(b.length);
+		out.write(b);
+	}
+
+	/**
+	 * Reads a string written by {@link #writeString(DataOutputStream, String)}.
+	 * @param limit - size of the index, which no string can be longer than
+	 */
+	private static String readString(DataInputStream in, long limit) throws IOException {
+		int length = in.readInt();
+		if (length < 0 || length > limit) {
+			throw new IOException("Sprite library index is corrupted");
+		}
+		byte[] b = new byte[length];
+		in.readFully(b);
+		return new String(b, StandardCharsets.UTF_8);
+	}
+
+	private static byte[] hash(byte[] data) {
+		try {
+			return MessageDigest.getInstance(HASH_ALGORITHM).digest(data);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e); // every JVM has SHA-256
+		}
+	}
+
+	/**
+	 * One indexed sprite file.
+	 */
+	public static final class Entry {
+		// local vars
+		private final String key;
+		private final Path path;
+		private final long size;
+		private final long modified;
+		private final String spriteName;
+		private final String authorName;
+		private final int checksum;
+		private final byte[] hash;
+		private final boolean valid;
+
+		private Entry(String key, Path path, long size, long modified,
+				String spriteName, String authorName, int checksum, byte[] hash) {
+			this(key, path, size, modified, spriteName, authorName, checksum, hash, true);
+		}
+
+		private Entry(String key, Path path, long size, long modified,
+				String spriteName, String authorName, int checksum, byte[] hash, boolean valid) {
+			this.key = key;
+			this.path = path;
+			this.size = size;
+			this.modified = modified;
+			this.spriteName = spriteName;
+			this.authorName = authorName;
+			this.checksum = checksum;
+			this.hash = hash;
+			this.valid = valid;
+		}
+
+		/**
+		 * A file that isn't a valid sprite; only its size and time are kept, to tell when it changes.
+		 */
+		private static Entry invalid(String key, Path path, long size, long modified) {
+			return new Entry(key, path, size, modified, "", "", 0, new byte[0], false);
+		}
+
+		/**
+		 * @return Location of the file
+		 */
+		public Path getPath() {
+			return path;
+		}
+
+		/**
+		 * @return File size, in bytes
+		 */
+		public long getSize() {
+			return size;
+		}
+
+		/**
+		 * @return Last modified time, in milliseconds since the epoch
+		 */
+		public long getLastModified() {
+			return modified;
+		}
+
+		/**
+		 * @return Sprite name
+		 */
+		public String getSpriteName() {
+			return spriteName;
+		}
+
+		/**
+		 * @return Author name
+		 */
+		public String getAuthorName() {
+			return authorName;
+		}
+
+		/**
+		 * @return The checksum stored in the file, as {@code 0xHHLL}
+		 */
+		public int getChecksum() {
+			return checksum;
+		}
+
+		/**
+		 * @return SHA-256 hash of the whole file
+		 */
+		public byte[] getContentHash() {
+			return hash.clone();
+		}
+
+		/**
+		 * Reads the full sprite.
+		 * @throws IOException
+		 * @throws ZSPRFormatException
+		 */
+		public ZSPRFile load() throws IOException, ZSPRFormatException {
+			return ZSPRFile.readFrom(ByteBuffer.wrap(Files.readAllBytes(path)));
+		}
+
+		@Override
+		public String toString() {
+			return spriteName;
+		}
+	}
+}
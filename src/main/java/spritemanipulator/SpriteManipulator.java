@@ -3,12 +3,20 @@ package spritemanipulator;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorConvertOp;
 import java.awt.image.DataBufferByte;
+import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 
 /**
  * {@code SpriteManipulator} provides functions for converting LTTP sprite files
@@ -103,7 +111,7 @@ public final class SpriteManipulator {
 	static final int[] SPRITE_OFFSET_INDICES = getIndices(3); // where to find the sprite offset in file
 	static final int[] PAL_OFFSET_INDICES = getIndices(5); // where to find the palette offset in file
 	static final int[] TYPE_INDICES = getIndices(7); // where to find the checksum in file
-	static final int SPRITE_NAME_OFFSET = calcOffset(8);
+	static final int SPRITE_NAME_OFFSET = calcOffset(9);
 	static final int NAME_ROM_MAX_LENGTH = 20;
 
 	/**
@@ -153,6 +161,8 @@ public final class SpriteManipulator {
 	public static final int PAL_OFFSET = 0x0DD308;
 	public static final int[] GLOVE_OFFSETS =
 			new int[] { 0xDEDF5, 0xDEDF6, 0xDEDF7, 0xDEDF8 }; // gloves, gloves, mitts, mitts
+	public static final int ROM_MIN_SIZE = GLOVE_OFFSETS[GLOVE_DATA_SIZE - 1] + 1; // end of the last patched byte
+	static final int GLOVES_OFFSET = GLOVE_OFFSETS[0]; // gloves offsets are contiguous
 
 	// data sizes for images
 	public static final int SPRITE_SHEET_WIDTH = 128;
@@ -210,74 +220,131 @@ public final class SpriteManipulator {
 	 * @return An indexed {@code byte[]} raster of the image
 	 */
 	public static byte[] index(byte[] pixels, int[] pal) {
+		return index(pixels, toIndexingPalette(pal));
+	}
+
+	/**
+	 * Converts an RRRGGGBBB palette for indexing.
+	 * Only colors that {@link #toRGB9(int, int, int)} could produce will ever match a pixel,
+	 * so any other entry is replaced with {@code -1}.
+	 */
+	private static short[] toIndexingPalette(int[] pal) {
+		short[] ret = new short[pal.length];
+		for (int s = 0; s < pal.length; s++) {
+			int cur = pal[s];
+			int c = SNESColor.fromRGB9(cur);
+			ret[s] = (SNESColor.toRGB9(c) == cur) ? (short) c : -1;
+		}
+		return ret;
+	}
+
+	/**
+	 * Indexes an image based on a palette of 15-bit colors.
+	 * Assumes ABGR color space.
+	 * <br><br>
+	 * If a color matches an index that belongs to one of the latter 3 mails
+	 * but does not match anything in green mail,
+	 * then it is treated as the color at the corresponding index of green mail.
+	 * Negative entries in the palette never match anything.
+	 *
+	 * @param pixels - aray of color indices
+	 * @param pal - palette colors, as {@link SNESColor}
+	 *
+	 * @return An indexed {@code byte[]} raster of the image
+	 */
+	public static byte[] index(byte[] pixels, short[] pal) {
 		// all 8x8 squares, read left to right, top to bottom
 		byte[] ret = new byte[INDEXED_RASTER_SIZE];
+		byte[] table = getIndexTable(pal);
 
 		// read image
-		for (int i = 0; i < INDEXED_RASTER_SIZE; i++) {
-			int pos = i * 4;
+		for (int i = 0, pos = 0; i < INDEXED_RASTER_SIZE; i++, pos += 4) {
 			// get each color and get rid of sign
 			// colors are stored as {A,B,G,R,A,B,G,R...}
 			int b = Byte.toUnsignedInt(pixels[pos+1]);
 			int g = Byte.toUnsignedInt(pixels[pos+2]);
 			int r = Byte.toUnsignedInt(pixels[pos+3]);
 
-			int rgb = toRGB9(r, g, b); // convert to 9 digits
+			ret[i] = table[SNESColor.fromRGB(r, g, b)];
+		}
+		return ret;
+	}
 
-			// find palette index of current pixel
-			for (int s = 0; s < pal.length; s++) {
-				if (pal[s] == rgb) {
-					ret[i] = (byte) (s % MAIL_PALETTE_SIZE); // mod 16 in case it reads another mail
-					break;
-				}
+	// the most recently used palette and its lookup table
+	private static volatile IndexTable lastIndexTable;
+
+	/**
+	 * A palette and the lookup table made from it.
+	 */
+	private static final class IndexTable {
+		final short[] pal;
+		final byte[] table;
+
+		IndexTable(short[] pal, byte[] table) {
+			this.pal = pal;
+			this.table = table;
+		}
+	}
+
+	/**
+	 * Finds the lookup table for a palette,
+	 * reusing the last one made if the palette has not changed.
+	 * <br><br>
+	 * The table is indexed by {@link SNESColor} and holds the palette index of that color.
+	 * Colors not in the palette map to index 0.
+	 */
+	static byte[] getIndexTable(short[] pal) {
+		IndexTable last = lastIndexTable;
+		if (last != null && Arrays.equals(last.pal, pal)) {
+			return last.table;
+		}
+
+		byte[] table = makeIndexTable(pal);
+		lastIndexTable = new IndexTable(pal.clone(), table);
+		return table;
+	}
+
+	/**
+	 * Builds a table of every 15-bit color to its palette index.
+	 * <br><br>
+	 * Colors are entered last to first, so when a color appears more than once,
+	 * the earliest index wins, the same as a front to back search.
+	 * This keeps green mail's indices ahead of the latter mails.
+	 */
+	private static byte[] makeIndexTable(short[] pal) {
+		byte[] ret = new byte[SNESColor.COLOR_COUNT];
+
+		for (int s = pal.length - 1; s >= 0; s--) {
+			int c = pal[s];
+			if (c < 0) {
+				continue;
 			}
+			ret[c] = (byte) (s % MAIL_PALETTE_SIZE); // mod 16 in case it reads another mail
 		}
+
 		return ret;
 	}
 
+	/**
+	 * Turn the image into a {@link TileMap}.
+	 *
+	 * @param pixels - aray of color indices
+	 * @return {@code TileMap} representing the image as a grid of color indices
+	 */
+	public static TileMap getTileMap(byte[] pixels) {
+		return TileMap.fromIndexedRaster(pixels);
+	}
+
 	/**
 	 * Turn the image into an array of 8x8 blocks.
+	 * <br>
+	 * See: {@link #getTileMap(byte[])}
 	 *
 	 * @param pixels - aray of color indices
 	 * @return {@code byte[][][]} representing the image as a grid of color indices
 	 */
 	public static byte[][][] get8x8(byte[] pixels) {
-		int largeCol = 0;
-		int intRow = 0;
-		int intCol = 0;
-		int index = 0;
-
-		// all 8x8 squares, read left to right, top to bottom
-		byte[][][] eightbyeight = new byte[SPRITE_BLOCK_COUNT][8][8];
-
-		// read image raster
-		for (int i = 0; i < INDEXED_RASTER_SIZE; i++) {
-			eightbyeight[index][intRow][intCol] = pixels[i];
-
-			// count up square by square
-			// at 8, reset the "Interior column" which we use to locate the pixel in 8x8
-			// increments the "Large column", which is the index of the 8x8 sprite on the sheet
-			// at 16, reset the index and move to the next row
-			// (so we can wrap around back to our old 8x8)
-			// after 8 rows, undo the index reset, and move on to the next super row
-			intCol++;
-			if (intCol == 8) {
-				index++;
-				largeCol++;
-				intCol = 0;
-				if (largeCol == 16) {
-					index -= 16;
-					largeCol = 0;
-					intRow++;
-					if (intRow == 8) {
-						index += 16;
-						intRow = 0;
-					} // end intRow if
-				} // end largeCol if
-			} // end intCol if
-		} // end loop
-
-		return eightbyeight;
+		return getTileMap(pixels).toArray();
 	}
 
 	/**
@@ -289,35 +356,202 @@ public final class SpriteManipulator {
 		return get8x8(index(pixels, palette));
 	}
 
+	/**
+	 * Indexes a sprite and turns into a {@link TileMap} in one go.
+	 * <br>
+	 * See: {@link #index(byte[], int[])}, {@link #getTileMap(byte[])}
+	 */
+	public static TileMap indexAndTileMap(byte[] pixels, int[] palette) {
+		return getTileMap(index(pixels, palette));
+	}
+
+	/**
+	 * Converts an image straight into SNES 4BPP sprite data.
+	 * The result is the same as
+	 * {@code export8x8ToSPR(indexAnd8x8(getImageRaster(convertToABGR(img)), palette))}.
+	 * <br><br>
+	 * Common image types are read one row of blocks at a time,
+	 * and each pixel goes from color to palette index to bit planes without
+	 * building an ABGR copy, an indexed raster or an index map of the sheet.
+	 * Anything else, including pixels that are only partly transparent,
+	 * goes through the full conversion instead.
+	 * @param img - 128x448 sprite sheet
+	 * @param palette - palette colors
+	 */
+	public static byte[] importImage(BufferedImage img, int[] palette) {
+		return importImage(img, toIndexingPalette(palette));
+	}
+
+	/**
+	 * Converts an image straight into SNES 4BPP sprite data,
+	 * using a palette of 15-bit colors.
+	 * <br>
+	 * See: {@link #importImage(BufferedImage, int[])}, {@link #index(byte[], short[])}
+	 * @param img - 128x448 sprite sheet
+	 * @param palette - palette colors, as {@link SNESColor}
+	 */
+	public static byte[] importImage(BufferedImage img, short[] palette) {
+		if (img.getWidth() == SPRITE_SHEET_WIDTH && img.getHeight() == SPRITE_SHEET_HEIGHT
+				&& ImagePixels.canRead(img)) {
+			byte[] ret = importDirectly(img, palette);
+			if (ret != null) {
+				return ret;
+			}
+		}
+
+		return export8x8ToSPR(getTileMap(index(getImageRaster(convertToABGR(img)), palette)));
+	}
+
+	/**
+	 * Streams an image into sprite data, one row of blocks at a time.
+	 * @return {@code null} if a pixel is partly transparent
+	 */
+	private static byte[] importDirectly(BufferedImage img, short[] palette) {
+		byte[] ret = new byte[SPRITE_DATA_SIZE];
+		byte[] table = getIndexTable(palette);
+		int[] band = new int[SPRITE_SHEET_WIDTH * 8];
+		int pos = 0;
+
+		for (int y = 0; y < SPRITE_SHEET_HEIGHT; y += 8) {
+			if (!ImagePixels.readARGB(img, y, 8, band)) {
+				return null;
+			}
+			for (int x = 0; x < SPRITE_SHEET_WIDTH; x += 8, pos += SPRITE_BLOCK_SIZE) {
+				for (int r = 0, i = x; r < 8; r++, i += SPRITE_SHEET_WIDTH) {
+					long row = 0;
+					for (int c = 7; c >= 0; c--) {
+						int argb = band[i + c];
+						row = (row << 8) | table[SNESColor.fromARGB(argb)];
+					}
+					Codec4BPP.encodeRow(row, ret, pos, r);
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Takes a sprite and turns it into a {@link TileMap}.
+	 * @param sprite
+	 */
+	public static TileMap makeTileMap(byte[] sprite) {
+		return TileMap.fromSpriteData(sprite);
+	}
+
 	/**
 	 * Takes a sprite and turns it into 896 blocks of 8x8 pixels.
+	 * <br>
+	 * See: {@link #makeTileMap(byte[])}
 	 * @param sprite
 	 */
 	public static byte[][][] makeSpr8x8(byte[] sprite) {
-		byte[][][] ret = new byte[SPRITE_BLOCK_COUNT][8][8];
-
-		// current block we're working on, each sized 32
-		int b = -1; // start at -1 since we're incrementing at 0mod32
+		return makeTileMap(sprite).toArray();
+	}
 
-		int g; // locates where in interlacing map we're reading from
+	/**
+	 * Decodes only the blocks that overlap a rectangle of the sheet.
+	 * @param sprite - SNES 4BPP sprite data
+	 * @param x - left edge, in pixels
+	 * @param y - top edge, in pixels
+	 * @param w - width, in pixels
+	 * @param h - height, in pixels
+	 * @return Color indices of the rectangle, one row after another
+	 */
+	public static byte[] decodeRegion(byte[] sprite, int x, int y, int w, int h) {
+		checkRegion(x, y, w, h);
+		byte[] ret = new byte[w * h];
+
+		for (int py = y; py < y + h; py++) {
+			int r = py % 8;
+			int blockRow = (py / 8) * TileMap.BLOCKS_PER_ROW;
+			for (int px = x, i = (py - y) * w; px < x + w; ) {
+				int blockStart = (blockRow + px / 8) * SPRITE_BLOCK_SIZE;
+				long row = Codec4BPP.decodeRow(sprite, blockStart, r);
+				for (int c = px % 8; c < 8 && px < x + w; c++, px++, i++) {
+					ret[i] = (byte) (row >>> (c * 8));
+				}
+			}
+		}
 
-		for (int i = 0; i < SPRITE_DATA_SIZE; i++) {
-			g = i % SPRITE_BLOCK_SIZE; // find interlacing index
-			if (g == 0) { b++; } // increment at 0th index
+		return ret;
+	}
 
-			int r = BPPI[g][0]; // row to look at
-			int p = BPPI[g][1]; // bit plane of byte
-			byte q = sprite[i]; // byte to unravel
+	/**
+	 * Decodes only the listed blocks into an index map.
+	 * Every other block of {@code map} is left untouched.
+	 * @param sprite - SNES 4BPP sprite data
+	 * @param blocks - block indices
+	 * @param map - destination
+	 */
+	public static void decodeBlocks(byte[] sprite, int[] blocks, TileMap map) {
+		byte[] data = map.data();
+		for (int b : blocks) {
+			if (b < 0 || b >= SPRITE_BLOCK_COUNT) {
+				throw new IllegalArgumentException("Block index out of range: " + b);
+			}
+			int pos = b * SPRITE_BLOCK_SIZE;
+			int off = TileMap.blockOffset(b);
+			for (int r = 0; r < 8; r++, off += SPRITE_SHEET_WIDTH) {
+				Codec4BPP.unpackRow(Codec4BPP.decodeRow(sprite, pos, r), data, off);
+			}
+		}
+	}
 
-			for (int c = 0; c < 8; c++) { // run through the byte
-				boolean bitOn = (q & (1 << (7-c))) != 0; // AND with 1 shifted to the correct plane
-				if (bitOn) { // if on (true), OR with that plane in index map
-					ret[b][r][c] |= (1 << p);
+	/**
+	 * Checks if every pixel of a rectangle is color index 0,
+	 * reading only the blocks that overlap it.
+	 * <br>
+	 * See: {@link #decodeRegion(byte[], int, int, int, int)}
+	 */
+	public static boolean isBlankRegion(byte[] sprite, int x, int y, int w, int h) {
+		checkRegion(x, y, w, h);
+
+		for (int py = y; py < y + h; py++) {
+			int r = py % 8;
+			int blockRow = (py / 8) * TileMap.BLOCKS_PER_ROW;
+			for (int bx = x / 8; bx * 8 < x + w; bx++) {
+				// only look at the columns of this block inside the rectangle
+				int c0 = Math.max(x - bx * 8, 0);
+				int c1 = Math.min(x + w - bx * 8, 8);
+				long mask = (c1 == 8 ? -1L : (1L << (c1 * 8)) - 1) & (-1L << (c0 * 8));
+				if ((Codec4BPP.decodeRow(sprite, (blockRow + bx) * SPRITE_BLOCK_SIZE, r) & mask) != 0) {
+					return false;
 				}
 			}
 		}
 
-		return ret;
+		return true;
+	}
+
+	/**
+	 * Renders only a rectangle of the sheet into a {@code TYPE_INT_ARGB} image.
+	 * <br>
+	 * See: {@link #decodeRegion(byte[], int, int, int, int)}
+	 * @param sprite - SNES 4BPP sprite data
+	 * @param argb - ARGB palette, as made by {@link #getARGBPalette(byte[][])}
+	 */
+	public static BufferedImage renderRegion(byte[] sprite, int x, int y, int w, int h, int[] argb) {
+		byte[] indices = decodeRegion(sprite, x, y, w, h);
+		int[] pixels = new int[indices.length];
+		for (int i = 0; i < pixels.length; i++) {
+			pixels[i] = argb[indices[i]];
+		}
+
+		BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+		image.getRaster().setDataElements(0, 0, w, h, pixels);
+		return image;
+	}
+
+	/**
+	 * Makes sure a rectangle is within the sheet.
+	 */
+	private static void checkRegion(int x, int y, int w, int h) {
+		if (x < 0 || y < 0 || w <= 0 || h <= 0
+				|| x + w > SPRITE_SHEET_WIDTH || y + h > SPRITE_SHEET_HEIGHT) {
+			throw new IllegalArgumentException(
+					String.format("Region (%d, %d, %d, %d) is not within the sprite sheet", x, y, w, h));
+		}
 	}
 
 	/**
@@ -349,18 +583,7 @@ public final class SpriteManipulator {
 	 * @return
 	 */
 	public static byte[] getRGB(byte c555a, byte c555b) {
-		byte[] ret = new byte[3];
-
-		short color = 0;
-		color = (short) Byte.toUnsignedInt(c555b);
-		color <<= 8;
-		color |= (short) Byte.toUnsignedInt(c555a);
-
-		ret[0] = (byte) (((color >> 0) & 0x1F) << 3);
-		ret[1] = (byte) (((color >> 5) & 0x1F) << 3);
-		ret[2] = (byte) (((color >> 10) & 0x1F) << 3);
-
-		return ret;
+		return SNESColor.toRGBArray(SNESColor.fromBytes(c555a, c555b));
 	}
 
 	/**
@@ -391,59 +614,38 @@ public final class SpriteManipulator {
 	}
 
 	/**
-	 * Turn index map in 8x8 format into an array of ABGR values.
+	 * Turn index map into an array of ABGR values.
 	 */
-	public static byte[] makeRaster(byte[][][] ebe, byte[][] palette) {
+	public static byte[] makeRaster(TileMap map, byte[][] palette) {
 		byte[] ret = new byte[ABGR_RASTER_SIZE];
-		byte[] color;
-		int largeCol = 0;
-		int intRow = 0;
-		int intCol = 0;
-		int index = 0;
-
-		// read image raster
-		for (int i = 0; i < ABGR_RASTER_SIZE / 4; i++) {
-			int pos = i * 4;
-			byte coli = ebe[index][intRow][intCol]; // get pixel color index
-			color = palette[coli]; // get palette color
-
-			if (coli == 0) { // index 0 = trans
-				ret[pos] = 0;
-			} else {
-				ret[pos] = (byte) 255;
-			}
+		byte[] data = map.data();
+
+		// tile map is already in raster order
+		for (int i = 0, pos = 0; i < INDEXED_RASTER_SIZE; i++) {
+			byte coli = data[i]; // get pixel color index
+			byte[] color = palette[coli]; // get palette color
+
+			// index 0 = trans
+			ret[pos++] = (coli == 0) ? 0 : (byte) 255;
 
 			// BGR
-			ret[pos+1] = color[2];
-			ret[pos+2] = color[1];
-			ret[pos+3] = color[0];
-
-			// count up square by square
-			// at 8, reset the "Interior column" which we use to locate the pixel in 8x8
-			// increments the "Large column", which is the index of the 8x8 sprite on the sheet
-			// at 16, reset the index and move to the next row
-			// (so we can wrap around back to our old 8x8)
-			// after 8 rows, undo the index reset, and move on to the next super row
-			intCol++;
-			if (intCol == 8) {
-				index++;
-				largeCol++;
-				intCol = 0;
-				if (largeCol == 16) {
-					index -= 16;
-					largeCol = 0;
-					intRow++;
-					if (intRow == 8) {
-						index += 16;
-						intRow = 0;
-					} // end intRow if
-				} // end largeCol if
-			} // end intCol if
-		} // end loop
+			ret[pos++] = color[2];
+			ret[pos++] = color[1];
+			ret[pos++] = color[0];
+		}
 
 		return ret;
 	}
 
+	/**
+	 * Turn index map in 8x8 format into an array of ABGR values.
+	 * <br>
+	 * See: {@link #makeRaster(TileMap, byte[][])}
+	 */
+	public static byte[] makeRaster(byte[][][] ebe, byte[][] palette) {
+		return makeRaster(TileMap.fromArray(ebe), palette);
+	}
+
 	/**
 	 * Turns a 4 byte raster {A,B,G,R} into an integer array and sets the image.
 	 * @param raster
@@ -466,13 +668,93 @@ public final class SpriteManipulator {
 		return image;
 	}
 
+	/**
+	 * Converts an RGB palette into packed ARGB colors.
+	 * Index 0 is fully transparent; every other color is opaque.
+	 * @param palette
+	 */
+	public static int[] getARGBPalette(byte[][] palette) {
+		int[] ret = new int[palette.length];
+		for (int i = 1; i < ret.length; i++) {
+			byte[] color = palette[i];
+			ret[i] = 0xFF000000
+					| ((color[0] & 0xFF) << 16)
+					| ((color[1] & 0xFF) << 8)
+					| (color[2] & 0xFF);
+		}
+		return ret;
+	}
+
+	/**
+	 * Renders an index map straight into a {@code TYPE_INT_ARGB} image.
+	 * <br>
+	 * See: {@link #makeSheet(TileMap, int[])}
+	 */
+	public static BufferedImage makeSheet(TileMap map, byte[][] palette) {
+		return makeSheet(map, getARGBPalette(palette));
+	}
+
+	/**
+	 * Renders an index map straight into a {@code TYPE_INT_ARGB} image.
+	 * <br><br>
+	 * Pixels are written one row of blocks at a time through the raster,
+	 * rather than by stealing its backing array,
+	 * so the image stays eligible for acceleration.
+	 * @param map - color index map
+	 * @param argb - ARGB palette, as made by {@link #getARGBPalette(byte[][])}
+	 */
+	public static BufferedImage makeSheet(TileMap map, int[] argb) {
+		BufferedImage image =
+			new BufferedImage(SPRITE_SHEET_WIDTH, SPRITE_SHEET_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+		WritableRaster raster = image.getRaster();
+		byte[] data = map.data();
+		int[] band = new int[SPRITE_SHEET_WIDTH * 8];
+
+		for (int y = 0, i = 0; y < SPRITE_SHEET_HEIGHT; y += 8) {
+			for (int j = 0; j < band.length; j++, i++) {
+				band[j] = argb[data[i]];
+			}
+			raster.setDataElements(0, y, SPRITE_SHEET_WIDTH, 8, band);
+		}
+
+		return image;
+	}
+
 	/**
 	 * Makes 5 separate images: green mail, blue mail, red mail, bunny, zapped.
+	 * <br>
+	 * See: {@link #makeAllMails(TileMap, byte[], byte[])}
 	 * @param eightbyeight
 	 * @param pal
 	 */
 	public static BufferedImage[][] makeAllMails(byte[][][] eightbyeight, byte[] pal, byte[] gloves) {
-		BufferedImage[][] ret = new BufferedImage[5][3];
+		return makeAllMails(TileMap.fromArray(eightbyeight), pal, gloves);
+	}
+
+	/**
+	 * Makes 5 separate images: green mail, blue mail, red mail, bunny, zapped.
+	 * <br>
+	 * Every image is rendered up front;
+	 * use {@link MailRenderSet} directly to render them only when needed.
+	 * @param map
+	 * @param pal
+	 */
+	public static BufferedImage[][] makeAllMails(TileMap map, byte[] pal, byte[] gloves) {
+		return new MailRenderSet(map, pal, gloves).toArray();
+	}
+
+	/**
+	 * Finds the 16 color palette used by each mail and gloves combination:
+	 * green mail, blue mail, red mail, bunny, zapped;
+	 * each with no gloves, power gloves and titan's mitts.
+	 * <br><br>
+	 * Bunny and zapped do not change with gloves,
+	 * so all 3 of their entries are the same palette.
+	 * @param pal
+	 * @param gloves
+	 */
+	public static byte[][][][] getMailPalettes(byte[] pal, byte[] gloves) {
+		byte[][][][] ret = new byte[5][3][][];
 
 		byte[][] rgbPal = getPal(pal);
 		byte[][] rgbGloves = new byte[3][3];
@@ -482,8 +764,6 @@ public final class SpriteManipulator {
 		rgbGloves[1] = getRGB(gloves[pos++], gloves[pos++]);
 		rgbGloves[2] = getRGB(gloves[pos++], gloves[pos++]);
 
-		byte[][] subpal;
-		byte[] raster;
 		byte[] curGlove;
 
 		for (int i = 0; i < 4; i++) {
@@ -493,72 +773,146 @@ public final class SpriteManipulator {
 				} else {
 					curGlove = rgbGloves[j];
 				}
-				subpal = getSubpal(rgbPal, curGlove, i);
-				raster = makeRaster(eightbyeight, subpal);
-				ret[i][j] = makeSheet(raster);
+				ret[i][j] = getSubpal(rgbPal, curGlove, i);
 			}
 		}
 
-		raster = makeRaster(eightbyeight, ZAP_PALETTE);
-		ret[4][2] = ret[4][1] = ret[4][0] = makeSheet(raster);
+		// copied so the zap palette itself can't be edited
+		byte[][] zap = new byte[MAIL_PALETTE_SIZE][];
+		for (int i = 0; i < MAIL_PALETTE_SIZE; i++) {
+			zap[i] = ZAP_PALETTE[i].clone();
+		}
+		ret[4][2] = ret[4][1] = ret[4][0] = zap;
 
 		return ret;
 	}
 
 	/**
 	 * Patches an {@link SPRFile} into a ROM.
+	 * Only the sprite, palette and gloves data are written; the rest of the ROM is not touched.
+	 * <br>
+	 * See: {@link #patchRom(Path, ZSPRFile, boolean)}
 	 * @param romTarget
 	 * @param spr
 	 * @throws IOException
 	 * @throws FileNotFoundException
 	 */
 	public static void patchRom(String romTarget, ZSPRFile spr) throws IOException {
-		// get ROM data
-		byte[] romStream;
-		try (FileInputStream fsInput = new FileInputStream(romTarget)) {
-			romStream = new byte[(int) fsInput.getChannel().size()];
-			fsInput.read(romStream);
-			fsInput.getChannel().position(0);
-			fsInput.close();
-
-			try (FileOutputStream fsOut = new FileOutputStream(romTarget)) {
-				// grab relevant data from zspr file
-				byte[] sprData = spr.getSpriteData();
-				byte[] palData = spr.getPalData();
-				byte[] glovesData = spr.getGlovesData();
-
-				for(int i = 0; i < SPRITE_DATA_SIZE; i++) {
-					romStream[SPRITE_OFFSET + i] = sprData[i];
-				}
+		patchRom(Paths.get(romTarget), spr, false);
+	}
 
-				// Check to see if glove colors are defined
-				boolean noneSet = true;
-				for (byte b : glovesData) {
-					if (b != 0) {
-						noneSet = false;
-						break;
-					}
-				}
+	/**
+	 * Patches an {@link SPRFile} into a ROM with positional writes,
+	 * so only about 29KB is written no matter how big the ROM is.
+	 * <br><br>
+	 * In crash safe mode, the ROM is copied to a temporary file in the same directory,
+	 * patched there, and then moved over the original,
+	 * so the original is never left half written.
+	 * @param rom
+	 * @param spr
+	 * @param crashSafe - {@code true} to patch a copy and atomically replace the ROM with it
+	 * @throws IOException if the ROM can't be written or is too small to hold a sprite
+	 */
+	public static void patchRom(Path rom, ZSPRFile spr, boolean crashSafe) throws IOException {
+		if (!crashSafe) {
+			try (FileChannel fc = FileChannel.open(rom, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				patchRom(fc, spr);
+			}
+			return;
+		}
 
-				// if not defined, skip this step
-				// otherwise write to the correct indices
-				if (noneSet) {
-					// do nothing
-				} else {
-					for (int i = 0; i < 4; i++) {
-						romStream[GLOVE_OFFSETS[i]] = glovesData[i];
-					}
-				}
+		Path dir = rom.toAbsolutePath().getParent();
+		Path temp = Files.createTempFile(dir, rom.getFileName().toString(), ".tmp");
+		try {
+			Files.copy(rom, temp, StandardCopyOption.REPLACE_EXISTING);
+			try (FileChannel fc = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				patchRom(fc, spr);
+				fc.force(true);
+			}
+			Files.move(temp, rom, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
 
-				// add palette data to ROM
-				for (int i = 0; i < PAL_DATA_SIZE; i++) {
-					romStream[PAL_OFFSET + i] = palData[i];
-				}
+	/**
+	 * Writes the sprite, palette and gloves data into an open ROM.
+	 */
+	private static void patchRom(FileChannel fc, ZSPRFile spr) throws IOException {
+		checkRomSize(fc);
+
+		writeFully(fc, ByteBuffer.wrap(spr.getSpriteData(), 0, SPRITE_DATA_SIZE), SPRITE_OFFSET);
+		writeFully(fc, ByteBuffer.wrap(spr.getPalData(), 0, PAL_DATA_SIZE), PAL_OFFSET);
+
+		// if glove colors aren't defined, skip this step
+		byte[] glovesData = spr.getGlovesData();
+		if (hasGloves(glovesData)) {
+			writeFully(fc, ByteBuffer.wrap(glovesData, 0, GLOVE_DATA_SIZE), GLOVES_OFFSET);
+		}
+	}
+
+	/**
+	 * Writes all of a buffer at a position, however many writes it takes.
+	 */
+	static void writeFully(FileChannel fc, ByteBuffer buff, long pos) throws IOException {
+		while (buff.hasRemaining()) {
+			pos += fc.write(buff, pos);
+		}
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the ROM is too small to hold a sprite
+	 */
+	static void checkRomSize(byte[] romData) {
+		if (romData.length < ROM_MIN_SIZE) {
+			throw new IllegalArgumentException(romTooSmall(romData.length));
+		}
+	}
+
+	/**
+	 * @throws IOException if the ROM is too small to hold a sprite
+	 */
+	static void checkRomSize(FileChannel fc) throws IOException {
+		if (fc.size() < ROM_MIN_SIZE) {
+			throw new IOException(romTooSmall(fc.size()));
+		}
+	}
+
+	static String romTooSmall(long size) {
+		return String.format("ROM is too small to hold a sprite (%d bytes; needs at least %d)",
+				size, ROM_MIN_SIZE);
+	}
+
+	/**
+	 * Patches an {@link SPRFile} into ROM data held in memory.
+	 * @param romData
+	 * @param spr
+	 * @throws IllegalArgumentException if the ROM is too small to hold a sprite
+	 */
+	public static void patchRom(byte[] romData, ZSPRFile spr) {
+		checkRomSize(romData);
 
-				fsOut.write(romStream, 0, romStream.length);
-				fsOut.close();
+		System.arraycopy(spr.getSpriteData(), 0, romData, SPRITE_OFFSET, SPRITE_DATA_SIZE);
+		System.arraycopy(spr.getPalData(), 0, romData, PAL_OFFSET, PAL_DATA_SIZE);
+
+		byte[] glovesData = spr.getGlovesData();
+		if (hasGloves(glovesData)) {
+			for (int i = 0; i < GLOVE_DATA_SIZE; i++) {
+				romData[GLOVE_OFFSETS[i]] = glovesData[i];
+			}
+		}
+	}
+
+	/**
+	 * @return {@code true} if any glove color is defined
+	 */
+	static boolean hasGloves(byte[] glovesData) {
+		for (byte b : glovesData) {
+			if (b != 0) {
+				return true;
 			}
 		}
+		return false;
 	}
 
 	/**
@@ -568,8 +922,7 @@ public final class SpriteManipulator {
 	 * @throws FileNotFoundException
 	 */
 	public static byte[] getSpriteDataFromROM(String romPath) throws IOException {
-		byte[] ROM = readFile(romPath);
-		return getSpriteDataFromROM(ROM);
+		return RomImage.open(Paths.get(romPath)).getSpriteData();
 	}
 
 	/**
@@ -577,13 +930,7 @@ public final class SpriteManipulator {
 	 * @param romData
 	 */
 	public static byte[] getSpriteDataFromROM(byte[] romData) {
-		byte[] ret = new byte[SPRITE_DATA_SIZE];
-
-		for (int i = 0; i < SPRITE_DATA_SIZE; i++) {
-			ret[i] = romData[SPRITE_OFFSET + i];
-		}
-
-		return ret;
+		return Arrays.copyOfRange(romData, SPRITE_OFFSET, SPRITE_OFFSET + SPRITE_DATA_SIZE);
 	}
 
 	/**
@@ -593,8 +940,7 @@ public final class SpriteManipulator {
 	 * @throws FileNotFoundException
 	 */
 	public static byte[] getPaletteDataFromROM(String romPath) throws IOException {
-		byte[] ROM = readFile(romPath);
-		return getPaletteDataFromROM(ROM);
+		return RomImage.open(Paths.get(romPath)).getPalData();
 	}
 
 	/**
@@ -602,13 +948,7 @@ public final class SpriteManipulator {
 	 * @param romData
 	 */
 	public static byte[]getPaletteDataFromROM(byte[] romData) {
-		byte[] ret = new byte[PAL_DATA_SIZE];
-
-		for (int i = 0; i < PAL_DATA_SIZE; i++) {
-			ret[i] = romData[PAL_OFFSET + i];
-		}
-
-		return ret;
+		return Arrays.copyOfRange(romData, PAL_OFFSET, PAL_OFFSET + PAL_DATA_SIZE);
 	}
 
 	/**
@@ -618,8 +958,7 @@ public final class SpriteManipulator {
 	 * @throws FileNotFoundException
 	 */
 	public static byte[] getGlovesDataFromROM(String romPath) throws IOException {
-		byte[] ROM = readFile(romPath);
-		return getGlovesDataFromROM(ROM);
+		return RomImage.open(Paths.get(romPath)).getGlovesData();
 	}
 
 	/**
@@ -639,31 +978,22 @@ public final class SpriteManipulator {
 
 	/**
 	 * Converts an index map into a proper 4BPP (SNES) byte map.
+	 * @param map - color index map
+	 * @return new byte array in SNES4BPP format
+	 */
+	public static byte[] export8x8ToSPR(TileMap map) {
+		return map.toSpriteData();
+	}
+
+	/**
+	 * Converts an index map into a proper 4BPP (SNES) byte map.
+	 * <br>
+	 * See: {@link #export8x8ToSPR(TileMap)}
 	 * @param eightbyeight - color index map
 	 * @return new byte array in SNES4BPP format
 	 */
 	public static byte[] export8x8ToSPR(byte[][][] eightbyeight) {
-		byte[] fourbpp = new byte[SPRITE_DATA_SIZE];
-		int pos = 0;
-
-		for (int i = 0; i < SPRITE_BLOCK_COUNT; i++) { // for each block
-			for (int j = 0; j < SPRITE_BLOCK_SIZE; j++) { // each byte, as per bppi
-				byte b = 0;
-				for (int k = 0; k < 8; k++) {
-					// get row's kth bit plane, based on index j of bppi
-					int row = BPPI[j][0];
-					int plane = BPPI[j][1];
-					int byteX = eightbyeight[i][row][k];
-
-					// AND the bits with 1000, 0100, 0010, 0001 to get bit in that location
-					boolean bitOn = (byteX & (1 << plane)) > 0;
-					b <<= 1;
-					if (bitOn) { b |= 1; }
-				} // end 8 bits of byte calculation
-				fourbpp[pos++] = b;
-			} // end 32 bytes for 8x8 block
-		} // end 896 blocks of 8x8
-		return fourbpp;
+		return export8x8ToSPR(TileMap.fromArray(eightbyeight));
 	}
 
 	/**
@@ -672,21 +1002,25 @@ public final class SpriteManipulator {
 	 * @return {@code byte[]} containing palette data in 5:5:5 format
 	 */
 	public static byte[] getPalDataFromArray(int[] pal) {
-		ByteBuffer palRet = ByteBuffer.allocate(PAL_DATA_SIZE); // create palette data as 5:5:5
-
-		for (int i = 1; i < MAIL_PALETTE_SIZE; i++) {
-			for (int t = 0; t < 4; t++) {
-				int cur = pal[i + (MAIL_PALETTE_SIZE * t)];
-				int r = cur / 1000000;
-				int g = (cur % 1000000) / 1000;
-				int b = cur % 1000;
-				short s = (short) ((( b / 8) << 10) | (( g / 8) << 5) | (( r / 8) << 0));
+		return getPalDataFromArray(SNESColor.fromRGB9(pal));
+	}
+
+	/**
+	 * Create binary palette data for appending to the end of the {@code .zspr} file.
+	 * @param pal - 64/66 length {@code short[]} containing the palette colors as {@link SNESColor}
+	 * @return {@code byte[]} containing palette data in 5:5:5 format
+	 */
+	public static byte[] getPalDataFromArray(short[] pal) {
+		byte[] ret = new byte[PAL_DATA_SIZE]; // create palette data as 5:5:5
+
+		for (int t = 0, pos = 0; t < 4; t++) {
+			for (int i = 1; i < MAIL_PALETTE_SIZE; i++, pos += 2) {
 				// put color into every mail palette
-				palRet.putShort(30*t+((i-1)*2),Short.reverseBytes(s));
+				SNESColor.toBytes(pal[i + (MAIL_PALETTE_SIZE * t)], ret, pos);
 			}
 		}
 
-		return palRet.array();
+		return ret;
 	}
 
 	/**
@@ -694,27 +1028,49 @@ public final class SpriteManipulator {
 	 * If the palette has no gloves data (it is only 64 colors), return null data.
 	 */
 	public static byte[] getGlovesDataFromArray(int[] pal) {
+		return getGlovesDataFromArray(SNESColor.fromRGB9(pal));
+	}
+
+	/**
+	 * Finds binary gloves data from the last 2 indices of the palette.
+	 * If the palette has no gloves data (it is only 64 colors), return null data.
+	 * @param pal - 64/66 length {@code short[]} containing the palette colors as {@link SNESColor}
+	 */
+	public static byte[] getGlovesDataFromArray(short[] pal) {
 		int l = pal.length;
 		assert l == ALL_MAILS_PALETTE_SIZE || l == ALL_MAILS_WITH_GLOVES_SIZE;
 
+		byte[] ret = new byte[GLOVE_DATA_SIZE];
 		if (l != ALL_MAILS_WITH_GLOVES_SIZE) { // when no data defined in here
-			return new byte[] { 0, 0, 0, 0 };
+			return ret;
 		}
 
-		ByteBuffer palRet = ByteBuffer.allocate(GLOVE_DATA_SIZE);
-		int loc = ALL_MAILS_PALETTE_SIZE; // start at end of palette
+		// start at end of palette
+		SNESColor.toBytes(pal[ALL_MAILS_PALETTE_SIZE], ret, 0);
+		SNESColor.toBytes(pal[ALL_MAILS_PALETTE_SIZE + 1], ret, 2);
 
-		for (int i = 0; i < 2; i++, loc++) {
-			int cur = pal[loc];
-			int r = cur / 1000000;
-			int g = (cur % 1000000) / 1000;
-			int b = cur % 1000;
+		return ret;
+	}
+
+	/**
+	 * Reads palette and gloves data back into a palette of 66 colors.
+	 * The first color of each mail is always black.
+	 * @param pal - palette data, as 5:5:5
+	 * @param gloves - gloves data, as 5:5:5
+	 */
+	public static short[] getSNESPalette(byte[] pal, byte[] gloves) {
+		short[] ret = new short[ALL_MAILS_WITH_GLOVES_SIZE];
 
-			short s = (short) ((( b / 8) << 10) | (( g / 8) << 5) | (( r / 8) << 0));
-			palRet.putShort(i*2,Short.reverseBytes(s)); // put color
+		for (int t = 0, pos = 0; t < 4; t++) {
+			for (int i = 1; i < MAIL_PALETTE_SIZE; i++, pos += 2) {
+				ret[i + (MAIL_PALETTE_SIZE * t)] = (short) SNESColor.fromBytes(pal, pos);
+			}
 		}
 
-		return palRet.array();
+		ret[ALL_MAILS_PALETTE_SIZE] = (short) SNESColor.fromBytes(gloves, 0);
+		ret[ALL_MAILS_PALETTE_SIZE + 1] = (short) SNESColor.fromBytes(gloves, 2);
+
+		return ret;
 	}
 
 	/**
@@ -722,18 +1078,7 @@ public final class SpriteManipulator {
 	 * @param pal - palette to round
 	 */
 	public static int[] roundPalette(int[] pal) {
-		int[] ret = new int[pal.length];
-		for (int i = 0; i < pal.length; i++) {
-			int cur = pal[i];
-			int r = cur / 1000000;
-			int g = (cur % 1000000) / 1000;
-			int b = cur % 1000;
-			r = roundVal(r);
-			g = roundVal(g);
-			b = roundVal(b);
-			ret[i] = toRGB9(r,g,b);
-		}
-		return ret;
+		return SNESColor.toRGB9(SNESColor.fromRGB9(pal));
 	}
 
 	/**
@@ -775,15 +1120,76 @@ public final class SpriteManipulator {
 
 	/**
 	 * Converts to ABGR colorspace
+	 * <br><br>
+	 * Common image types are copied straight from their pixel data.
+	 * An ABGR image that would come out the same is returned as is.
+	 * Other color spaces, premultiplied alpha and partly transparent pixels
+	 * go through a {@link ColorConvertOp}.
 	 * @param img - image to convert
-	 * @return New {@code BufferredImage} in the correct colorspace
+	 * @return {@code BufferredImage} in the correct colorspace
 	 */
-
 	public static BufferedImage convertToABGR(BufferedImage img) {
 		BufferedImage ret = null;
-		ret = new BufferedImage(img.getWidth(),img.getHeight(),BufferedImage.TYPE_4BYTE_ABGR);
-		ColorConvertOp rgb = new ColorConvertOp(null);
-		rgb.filter(img,ret);
+		if (ImagePixels.canRead(img)) {
+			if (img.getType() == BufferedImage.TYPE_4BYTE_ABGR && isConvertedABGR(img)) {
+				return img;
+			}
+			ret = copyToABGR(img);
+		}
+
+		if (ret == null) {
+			ret = new BufferedImage(img.getWidth(),img.getHeight(),BufferedImage.TYPE_4BYTE_ABGR);
+			ColorConvertOp rgb = new ColorConvertOp(null);
+			rgb.filter(img,ret);
+		}
+		return ret;
+	}
+
+	/**
+	 * Checks if an ABGR image only has opaque pixels or fully transparent black pixels,
+	 * which is all that a {@link ColorConvertOp} would give.
+	 */
+	private static boolean isConvertedABGR(BufferedImage img) {
+		byte[] data = getImageRaster(img);
+		int l = img.getWidth() * img.getHeight() * 4;
+		for (int i = 0; i < l; i += 4) {
+			int a = data[i] & 0xFF;
+			if (a == 0xFF) {
+				continue;
+			}
+			if (a != 0 || data[i+1] != 0 || data[i+2] != 0 || data[i+3] != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Copies an image that {@link ImagePixels} can read into a new ABGR image,
+	 * 8 rows at a time.
+	 * @return {@code null} if a pixel is partly transparent
+	 */
+	private static BufferedImage copyToABGR(BufferedImage img) {
+		int w = img.getWidth();
+		int h = img.getHeight();
+		BufferedImage ret = new BufferedImage(w, h, BufferedImage.TYPE_4BYTE_ABGR);
+		byte[] data = getImageRaster(ret);
+		int[] band = new int[w * 8];
+
+		for (int y = 0, pos = 0; y < h; y += 8) {
+			int rows = Math.min(8, h - y);
+			if (!ImagePixels.readARGB(img, y, rows, band)) {
+				return null;
+			}
+			for (int i = 0, l = w * rows; i < l; i++) {
+				int argb = band[i];
+				data[pos++] = (byte) (argb >>> 24);
+				data[pos++] = (byte) argb;
+				data[pos++] = (byte) (argb >> 8);
+				data[pos++] = (byte) (argb >> 16);
+			}
+		}
+
 		return ret;
 	}
 
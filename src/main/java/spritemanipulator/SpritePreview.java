@@ -3,6 +3,7 @@ package spritemanipulator;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 
 import javax.imageio.ImageIO;
 import javax.swing.Icon;
@@ -13,65 +14,87 @@ import javax.swing.filechooser.FileView;
  * @author fatmanspanda
  */
 class SpritePreview extends FileView {
-	private static BufferedImage PALETTE_ICON; {
-		try {
-			PALETTE_ICON = ImageIO.read(SpritePreview.class.getResourceAsStream(
-					"/images/fileicon-palette.png"));
-		} catch (IOException e) {
-	}};
+	// class constants
+	static final int PREVIEW_SIZE = 16;
+	private static final int CACHE_CAPACITY = 1024;
+	private static final Icon EMPTY_ICON = new ImageIcon();
+
+	private static final ImageIcon PALETTE_ICON = loadIcon("/images/fileicon-palette.png");
+	private static final ImageIcon ROM_ICON = loadIcon("/images/fileicon-rom.png");
+
+	// local vars
+	private final ThumbnailCache cache;
+
+	/**
+	 * Creates a file view that keeps previews in memory only.
+	 */
+	public SpritePreview() {
+		this(null);
+	}
+
+	/**
+	 * Creates a file view that also keeps previews on disk.
+	 * @param cacheDir - directory for cached previews, or {@code null} for none
+	 */
+	public SpritePreview(Path cacheDir) {
+		cache = new ThumbnailCache(CACHE_CAPACITY, PREVIEW_SIZE, cacheDir);
+	}
 
-	private static BufferedImage ROM_ICON; {
+	private static ImageIcon loadIcon(String path) {
 		try {
-			ROM_ICON = ImageIO.read(SpritePreview.class.getResourceAsStream(
-					"/images/fileicon-rom.png"));
-		} catch (IOException e) {
-	}};
+			return new ImageIcon(ImageIO.read(SpritePreview.class.getResourceAsStream(path)));
+		} catch (IOException | IllegalArgumentException e) {
+			return new ImageIcon();
+		}
+	}
 
 	public Icon getIcon(File f) {
 		String path = f.getAbsolutePath();
-		ZSPRFile spr;
-		BufferedImage preview;
 		if (SpriteManipulator.testFileType(path, ZSPRFile.EXTENSION)) {
-			try {
-				spr = ZSPRFile.readFile(path);
-			} catch (IOException
-					| ZSPRFormatException e) {
-				return new ImageIcon();
+			String key = ThumbnailCache.keyOf(f);
+			Icon ret = cache.get(key);
+			if (ret != null) {
+				return ret;
 			}
 
-			byte[] spriteData = spr.getSpriteData();
-			byte[][][] ebe = SpriteManipulator.makeSpr8x8(spriteData);
-
-			// check for an empty head
-			boolean emptyHead = true;
-			checkHead:
-			for (int i = 0; i < 2; i++) {
-				int index = new int[] {2,18}[i]; // blocks that hold head data
-				int pos = index * SpriteManipulator.SPRITE_BLOCK_SIZE;
-				for (int j = 0; j < SpriteManipulator.SPRITE_BLOCK_SIZE * 2; j++, pos++) {
-					if (spriteData[pos] != 0) {
-						emptyHead = false;
-						break checkHead;
-					}
+			BufferedImage preview = cache.readDisk(key);
+			if (preview == null) {
+				try {
+					preview = makePreview(ZSPRFile.readFile(path));
+				} catch (IOException
+						| ZSPRFormatException e) {
+					cache.put(key, EMPTY_ICON);
+					return EMPTY_ICON;
 				}
+				cache.writeDisk(key, preview);
 			}
-			byte[][] pal = SpriteManipulator.getPal(spr.getPalData());
-			BufferedImage sheet = SpriteManipulator.makeSheet(SpriteManipulator.makeRaster(ebe, pal));
 
-			// if empty, use cell B3
-			// otherwise use A1
-			int x = emptyHead ? 48 : 16;
-			int y = emptyHead ? 16 : 0;
-			preview = sheet.getSubimage(x, y, 16, 16);
-
-			//return new ImageIcon(preview);
-			return new ImageIcon(preview);
+			ret = new ImageIcon(preview);
+			cache.put(key, ret);
+			return ret;
 		} else if (SpriteManipulator.testFileType(path, new String[]{ "gpl", "pal", "txt" })) {
-			return new ImageIcon(PALETTE_ICON);
+			return PALETTE_ICON;
 		} else if (SpriteManipulator.testFileType(path, "sfc")) {
-			return new ImageIcon(ROM_ICON);
+			return ROM_ICON;
 		} else { // non zspr files can use their default icons
 			return super.getIcon(f);
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Draws the 16&times;16 preview of a sprite.
+	 * @param spr
+	 */
+	static BufferedImage makePreview(ZSPRFile spr) {
+		byte[] spriteData = spr.getSpriteData();
+
+		// if the head (A1) is empty, use cell B3
+		boolean emptyHead = SpriteManipulator.isBlankRegion(spriteData, 16, 0, PREVIEW_SIZE, PREVIEW_SIZE);
+		int x = emptyHead ? 48 : 16;
+		int y = emptyHead ? 16 : 0;
+
+		// green mail
+		int[] argb = SpriteManipulator.getARGBPalette(SpriteManipulator.getPal(spr.getPalData()));
+		return SpriteManipulator.renderRegion(spriteData, x, y, PREVIEW_SIZE, PREVIEW_SIZE, argb);
+	}
+}
@@ -0,0 +1,153 @@
+package spritemanipulator;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.swing.Icon;
+
+/**
+ * Two level cache of small ARGB sprite previews.
+ * <br><br>
+ * Previews are kept in memory, least recently used first out,
+ * and optionally as files in a cache directory so they survive restarts.
+ * Entries are keyed by a file's path, size and modification time,
+ * so changed files are never served a stale preview.
+ *
+ * @author fatmanspanda
+ */
+final class ThumbnailCache {
+	// class constants
+	private static final int DISK_VERSION = 1;
+
+	// local vars
+	private final int size;
+	private final Path dir;
+	private final Map<String, Icon> memory;
+
+	/**
+	 * Creates a new cache.
+	 * @param capacity - previews held in memory
+	 * @param size - width and height of each preview
+	 * @param dir - directory for the disk cache, or {@code null} for none
+	 */
+	ThumbnailCache(final int capacity, int size, Path dir) {
+		this.size = size;
+		this.dir = dir;
+		memory = new LinkedHashMap<String, Icon>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Icon> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * @return The key of a file's current state
+	 */
+	static String keyOf(File f) {
+		return f.getAbsolutePath() + '|' + f.length() + '|' + f.lastModified();
+	}
+
+	/**
+	 * @return The preview held in memory, or {@code null}
+	 */
+	synchronized Icon get(String key) {
+		return memory.get(key);
+	}
+
+	/**
+	 * Holds a preview in memory.
+	 */
+	synchronized void put(String key, Icon value) {
+		memory.put(key, value);
+	}
+
+	/**
+	 * Reads a preview from the disk cache.
+	 * @return {@code null} if there's no disk cache or the preview isn't in it
+	 */
+	BufferedImage readDisk(String key) {
+		if (dir == null) {
+			return null;
+		}
+
+		Path p = diskPath(key);
+		if (!Files.isRegularFile(p)) {
+			return null;
+		}
+
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(Files.newInputStream(p)))) {
+			// the name is only a hash, so make sure it's the right file
+			if (in.readUnsignedByte() != DISK_VERSION || !in.readUTF().equals(key)) {
+				return null;
+			}
+			BufferedImage ret = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+			int[] argb = ((DataBufferInt) ret.getRaster().getDataBuffer()).getData();
+			for (int i = 0; i < argb.length; i++) {
+				argb[i] = in.readInt();
+			}
+			return ret;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Writes a preview to the disk cache, if there is one.
+	 * Failures are ignored; the preview will just be made again next time.
+	 * @param img - a {@code size}&times;{@code size} image
+	 */
+	void writeDisk(String key, BufferedImage img) {
+		if (dir == null) {
+			return;
+		}
+
+		int[] argb = img.getRGB(0, 0, size, size, null, 0, size);
+		Path p = diskPath(key);
+		Path temp = null;
+		try {
+			Files.createDirectories(dir);
+			temp = Files.createTempFile(dir, p.getFileName().toString(), ".tmp");
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(temp)))) {
+				out.writeByte(DISK_VERSION);
+				out.writeUTF(key);
+				for (int c : argb) {
+					out.writeInt(c);
+				}
+			}
+			Files.move(temp, p, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			// not worth failing a preview over
+		} finally {
+			if (temp != null) {
+				try {
+					Files.deleteIfExists(temp);
+				} catch (IOException e) {
+				}
+			}
+		}
+	}
+
+	/**
+	 * Every version of a file shares one cache file, so old previews are overwritten.
+	 */
+	private Path diskPath(String key) {
+		String path = key.substring(0, key.lastIndexOf('|', key.lastIndexOf('|') - 1));
+		return dir.resolve(String.format("%08x.thumb", path.hashCode()));
+	}
+}
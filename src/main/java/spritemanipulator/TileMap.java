@@ -0,0 +1,195 @@
+package spritemanipulator;
+
+import java.util.Arrays;
+
+import static spritemanipulator.SpriteManipulator.*;
+
+/**
+ * Color index map of an entire sprite sheet, backed by a single flat {@code byte[]}.
+ * <br><br>
+ * Pixels are stored in raster order, left to right, top to bottom,
+ * so the sheet can be read straight through for rendering.
+ * The 896 8x8 blocks are addressed the same way as in the {@code byte[][][]} format,
+ * where block {@code i} sits at column {@code i % 16} and row {@code i / 16} of the sheet.
+ *
+ * @author fatmanspanda
+ */
+public final class TileMap {
+	// class constants
+	public static final int BLOCKS_PER_ROW = SPRITE_SHEET_WIDTH / 8;
+
+	// local vars
+	private final byte[] data;
+
+	/**
+	 * Creates an empty {@code TileMap}, with every pixel at index 0.
+	 */
+	public TileMap() {
+		this.data = new byte[INDEXED_RASTER_SIZE];
+	}
+
+	// wraps data without copying
+	private TileMap(byte[] data) {
+		this.data = data;
+	}
+
+	/**
+	 * Decodes SNES 4BPP sprite data into a new {@code TileMap}.
+	 * @param sprite
+	 */
+	public static TileMap fromSpriteData(byte[] sprite) {
+		TileMap ret = new TileMap();
+		byte[] data = ret.data;
+
+		for (int b = 0, pos = 0; b < SPRITE_BLOCK_COUNT; b++, pos += SPRITE_BLOCK_SIZE) {
+			int off = blockOffset(b);
+			for (int r = 0; r < 8; r++, off += SPRITE_SHEET_WIDTH) {
+				Codec4BPP.unpackRow(Codec4BPP.decodeRow(sprite, pos, r), data, off);
+			}
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Creates a new {@code TileMap} from an indexed raster of the entire sheet.
+	 * @param pixels - array of color indices
+	 */
+	public static TileMap fromIndexedRaster(byte[] pixels) {
+		TileMap ret = new TileMap();
+		System.arraycopy(pixels, 0, ret.data, 0, INDEXED_RASTER_SIZE);
+		return ret;
+	}
+
+	/**
+	 * Creates a new {@code TileMap} from an index map in 8x8 format.
+	 * @param eightbyeight
+	 */
+	public static TileMap fromArray(byte[][][] eightbyeight) {
+		TileMap ret = new TileMap();
+		for (int b = 0; b < SPRITE_BLOCK_COUNT; b++) {
+			int off = blockOffset(b);
+			for (int r = 0; r < 8; r++, off += SPRITE_SHEET_WIDTH) {
+				System.arraycopy(eightbyeight[b][r], 0, ret.data, off, 8);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Encodes this map into SNES 4BPP sprite data.
+	 * Only the lower 4 bits of each index are kept.
+	 */
+	public byte[] toSpriteData() {
+		byte[] ret = new byte[SPRITE_DATA_SIZE];
+
+		for (int b = 0, pos = 0; b < SPRITE_BLOCK_COUNT; b++, pos += SPRITE_BLOCK_SIZE) {
+			int off = blockOffset(b);
+			for (int r = 0; r < 8; r++, off += SPRITE_SHEET_WIDTH) {
+				Codec4BPP.encodeRow(Codec4BPP.packRow(data, off), ret, pos, r);
+			}
+		}
+
+		return ret;
+	}
+
+	/**
+	 * @return A copy of this map in 8x8 format
+	 */
+	public byte[][][] toArray() {
+		byte[][][] ret = new byte[SPRITE_BLOCK_COUNT][8][8];
+		for (int b = 0; b < SPRITE_BLOCK_COUNT; b++) {
+			int off = blockOffset(b);
+			for (int r = 0; r < 8; r++, off += SPRITE_SHEET_WIDTH) {
+				System.arraycopy(data, off, ret[b][r], 0, 8);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * @return A copy of this map as an indexed raster
+	 */
+	public byte[] toIndexedRaster() {
+		return data.clone();
+	}
+
+	/**
+	 * @return A copy of this map
+	 */
+	public TileMap copy() {
+		return new TileMap(data.clone());
+	}
+
+	/**
+	 * Gets the color index of a pixel on the sheet.
+	 * @param x
+	 * @param y
+	 */
+	public byte getPixel(int x, int y) {
+		return data[y * SPRITE_SHEET_WIDTH + x];
+	}
+
+	/**
+	 * Sets the color index of a pixel on the sheet.
+	 * @param x
+	 * @param y
+	 * @param index
+	 */
+	public void setPixel(int x, int y, byte index) {
+		data[y * SPRITE_SHEET_WIDTH + x] = index;
+	}
+
+	/**
+	 * Gets the color index of a pixel inside an 8x8 block.
+	 * Equivalent to {@code eightbyeight[block][row][col]}.
+	 * @param block
+	 * @param row
+	 * @param col
+	 */
+	public byte get(int block, int row, int col) {
+		return data[blockOffset(block) + row * SPRITE_SHEET_WIDTH + col];
+	}
+
+	/**
+	 * Sets the color index of a pixel inside an 8x8 block.
+	 * Equivalent to {@code eightbyeight[block][row][col] = index}.
+	 * @param block
+	 * @param row
+	 * @param col
+	 * @param index
+	 */
+	public void set(int block, int row, int col, byte index) {
+		data[blockOffset(block) + row * SPRITE_SHEET_WIDTH + col] = index;
+	}
+
+	/**
+	 * Direct access to the backing raster for renderers in this package.
+	 */
+	byte[] data() {
+		return data;
+	}
+
+	/**
+	 * Finds the raster index of the top left pixel of a block.
+	 */
+	static int blockOffset(int block) {
+		return (block / BLOCKS_PER_ROW) * 8 * SPRITE_SHEET_WIDTH + (block % BLOCKS_PER_ROW) * 8;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof TileMap)) {
+			return false;
+		}
+		return Arrays.equals(data, ((TileMap) o).data);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(data);
+	}
+}
@@ -0,0 +1,303 @@
+package spritemanipulator;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static spritemanipulator.SpriteManipulator.*;
+
+/**
+ * Content addressed store of 4BPP blocks and palettes shared by many sprites.
+ * <br><br>
+ * Each unique 32 byte block is kept once in a single pool.
+ * A sprite is held as a table of 896 references into that pool,
+ * and its sprite data is only rebuilt when asked for.
+ * Reference tables, palette and gloves data are interned as well,
+ * with gloves starting from {@link SpriteManipulator#VANILLA_GLOVE_COLORS},
+ * so sprites that share blocks or colors share the same arrays.
+ * <br><br>
+ * Two sprites in the same store hold the same data exactly when
+ * their reference tables and palettes are the same objects.
+ *
+ * @author fatmanspanda
+ */
+public final class TileStore {
+	// class constants
+	private static final int EMPTY = -1;
+	private static final int INITIAL_BLOCKS = 1024;
+
+	// local vars
+	private byte[] pool = new byte[INITIAL_BLOCKS * SPRITE_BLOCK_SIZE];
+	private int blockCount = 0;
+	private int[] slots = newSlots(INITIAL_BLOCKS * 2);
+	private final Map<Key, byte[]> palettes = new HashMap<Key, byte[]>();
+	private final Map<TableKey, int[]> tables = new HashMap<TableKey, int[]>();
+
+	/**
+	 * Creates an empty store, with the vanilla and undefined glove colors already interned.
+	 */
+	public TileStore() {
+		intern(VANILLA_GLOVE_COLORS.clone());
+		intern(new byte[GLOVE_DATA_SIZE]);
+	}
+
+	/**
+	 * Adds a sprite's data to the store.
+	 * Names are not kept.
+	 * @param spr
+	 */
+	public synchronized Entry add(ZSPRFile spr) {
+		return new Entry(internTable(addSpriteData(spr.getSpriteData())),
+				intern(spr.getPalData()), intern(spr.getGlovesData()));
+	}
+
+	/**
+	 * Adds the blocks of sprite data to the store.
+	 * @param sprite - 4BPP sprite data
+	 * @return The sprite's reference table: the pool index of each of its blocks
+	 */
+	public synchronized int[] addSpriteData(byte[] sprite) {
+		int[] ret = new int[SPRITE_BLOCK_COUNT];
+		for (int b = 0; b < SPRITE_BLOCK_COUNT; b++) {
+			ret[b] = addBlock(sprite, b * SPRITE_BLOCK_SIZE);
+		}
+		return ret;
+	}
+
+	/**
+	 * Rebuilds sprite data from a reference table.
+	 * @param refs - from {@link #addSpriteData(byte[])}
+	 */
+	public synchronized byte[] getSpriteData(int[] refs) {
+		byte[] ret = new byte[SPRITE_DATA_SIZE];
+		for (int b = 0; b < SPRITE_BLOCK_COUNT; b++) {
+			System.arraycopy(pool, refs[b] * SPRITE_BLOCK_SIZE, ret, b * SPRITE_BLOCK_SIZE, SPRITE_BLOCK_SIZE);
+		}
+		return ret;
+	}
+
+	/**
+	 * Finds the shared copy of a palette, or keeps a copy of this one if it's new.
+	 * The returned array is shared and must not be changed.
+	 * @param data - palette or gloves data
+	 */
+	public synchronized byte[] intern(byte[] data) {
+		Key k = new Key(data);
+		byte[] ret = palettes.get(k);
+		if (ret == null) {
+			ret = data.clone();
+			palettes.put(new Key(ret), ret);
+		}
+		return ret;
+	}
+
+	/**
+	 * Finds the shared copy of a reference table, or keeps this one if it's new.
+	 */
+	private int[] internTable(int[] refs) {
+		TableKey k = new TableKey(refs);
+		int[] ret = tables.get(k);
+		if (ret == null) {
+			ret = refs;
+			tables.put(k, ret);
+		}
+		return ret;
+	}
+
+	/**
+	 * @return Number of unique blocks held
+	 */
+	public synchronized int getBlockCount() {
+		return blockCount;
+	}
+
+	/**
+	 * @return Number of unique palettes held, including gloves
+	 */
+	public synchronized int getPaletteCount() {
+		return palettes.size();
+	}
+
+	/**
+	 * Finds or adds a single block.
+	 * @return Its index in the pool
+	 */
+	private int addBlock(byte[] sprite, int pos) {
+		int mask = slots.length - 1;
+		for (int s = hash(sprite, pos) & mask; ; s = (s + 1) & mask) {
+			int ref = slots[s];
+			if (ref == EMPTY) {
+				ref = blockCount++;
+				if (ref * SPRITE_BLOCK_SIZE == pool.length) {
+					pool = Arrays.copyOf(pool, pool.length * 2);
+				}
+				System.arraycopy(sprite, pos, pool, ref * SPRITE_BLOCK_SIZE, SPRITE_BLOCK_SIZE);
+				slots[s] = ref;
+
+				// keep the table at most half full
+				if (blockCount * 2 > slots.length) {
+					rehash();
+				}
+				return ref;
+			}
+			if (sameBlock(sprite, pos, ref)) {
+				return ref;
+			}
+		}
+	}
+
+	private boolean sameBlock(byte[] sprite, int pos, int ref) {
+		int p = ref * SPRITE_BLOCK_SIZE;
+		for (int i = 0; i < SPRITE_BLOCK_SIZE; i++) {
+			if (sprite[pos + i] != pool[p + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void rehash() {
+		slots = newSlots(slots.length * 2);
+		int mask = slots.length - 1;
+		for (int ref = 0; ref < blockCount; ref++) {
+			int s = hash(pool, ref * SPRITE_BLOCK_SIZE) & mask;
+			while (slots[s] != EMPTY) {
+				s = (s + 1) & mask;
+			}
+			slots[s] = ref;
+		}
+	}
+
+	private static int[] newSlots(int size) {
+		int[] ret = new int[size];
+		Arrays.fill(ret, EMPTY);
+		return ret;
+	}
+
+	/**
+	 * Hashes a block as 4 little endian {@code long}s.
+	 */
+	private static int hash(byte[] data, int pos) {
+		long h = 0;
+		for (int end = pos + SPRITE_BLOCK_SIZE; pos < end; pos += Long.BYTES) {
+			h = (h ^ getLong(data, pos)) * 0x9E3779B97F4A7C15L;
+		}
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private static long getLong(byte[] data, int pos) {
+		long ret = 0;
+		for (int i = Long.BYTES - 1; i >= 0; i--) {
+			ret = (ret << 8) | (data[pos + i] & 0xFF);
+		}
+		return ret;
+	}
+
+	/**
+	 * Wraps an array so it can be looked up by content.
+	 */
+	private static final class Key {
+		private final byte[] data;
+		private final int hash;
+
+		Key(byte[] data) {
+			this.data = data;
+			this.hash = Arrays.hashCode(data);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key && Arrays.equals(data, ((Key) o).data);
+		}
+	}
+
+	/**
+	 * Wraps a reference table so it can be looked up by content.
+	 */
+	private static final class TableKey {
+		private final int[] refs;
+		private final int hash;
+
+		TableKey(int[] refs) {
+			this.refs = refs;
+			this.hash = Arrays.hashCode(refs);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof TableKey && Arrays.equals(refs, ((TableKey) o).refs);
+		}
+	}
+
+	/**
+	 * A sprite held in a {@link TileStore}.
+	 */
+	public static final class Entry {
+		// local vars
+		private final int[] refs;
+		private final byte[] palData;
+		private final byte[] glovesData;
+
+		private Entry(int[] refs, byte[] palData, byte[] glovesData) {
+			this.refs = refs;
+			this.palData = palData;
+			this.glovesData = glovesData;
+		}
+
+		/**
+		 * @return A copy of the reference table
+		 */
+		public int[] getRefs() {
+			return refs.clone();
+		}
+
+		/**
+		 * @return A copy of the palette data
+		 */
+		public byte[] getPalData() {
+			return palData.clone();
+		}
+
+		/**
+		 * @return A copy of the gloves data
+		 */
+		public byte[] getGlovesData() {
+			return glovesData.clone();
+		}
+
+		/**
+		 * Rebuilds this sprite as an untitled {@code ZSPRFile}.
+		 * @param store - the store this entry was added to
+		 */
+		public ZSPRFile toZSPRFile(TileStore store) {
+			return new ZSPRFile(store.getSpriteData(refs), getPalData(), getGlovesData());
+		}
+
+		/**
+		 * Entries of the same store are equal when they hold the same data.
+		 */
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Entry)) {
+				return false;
+			}
+			Entry e = (Entry) o;
+			return refs == e.refs && palData == e.palData && glovesData == e.glovesData;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(refs) * 31 + System.identityHashCode(palData);
+		}
+	}
+}
@@ -1,7 +1,15 @@
 package spritemanipulator;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 import static spritemanipulator.SpriteManipulator.*;
 
@@ -29,6 +37,16 @@ public class ZSPRFile {
 	private static final short SPRITE_SIZE_SHORT = (short) SPRITE_DATA_SIZE; // cast to not get extra bytes
 	private static final short PAL_SIZE_SHORT = (short) PAL_DATA_SIZE; // cast to not get extra bytes
 
+	// constant blocks
+	private static final byte[] DEFAULT_CHECKSUM = new byte[] {
+			0x00, 0x00,
+			(byte) 0xFF, (byte) 0xFF // ffs signed bytes
+		};
+	private static final byte[] PLAYER_TYPE = new byte[] { 1, 0 };
+
+	// enough for the header and typical names
+	private static final int METADATA_READ_SIZE = 512;
+
 	// local vars
 	private byte[] spriteData;
 	private byte[] palData;
@@ -36,7 +54,12 @@ public class ZSPRFile {
 	private String spriteName;
 	private String authorName;
 	private String authorNameROM;
+
+	// serialized file, only rebuilt when something has changed
 	private byte[] dataStream;
+	private boolean dirty = true;
+	private boolean spriteSumDirty = true;
+	private int spriteSum;
 
 	/**
 	 * Creates an empty {@code ZSPRFile} containing no data except for default glove colors.
@@ -48,6 +71,7 @@ public class ZSPRFile {
 
 	/**
 	 * Creates a new {@code ZSPRFile}.
+	 * The arrays are copied.
 	 * @param spriteData
 	 * @param palData
 	 * @param glovesData
@@ -56,9 +80,9 @@ public class ZSPRFile {
 	 */
 	public ZSPRFile(byte[] spriteData, byte[] palData, byte[] glovesData,
 			String spriteName, String authorName) {
-		this.spriteData = spriteData;
-		this.palData = palData;
-		this.glovesData = glovesData;
+		this.spriteData = copy(spriteData);
+		this.palData = copy(palData);
+		this.glovesData = copy(glovesData);
 		this.spriteName = spriteName;
 		this.authorName = authorName;
 		this.authorNameROM = authorName;
@@ -71,48 +95,51 @@ public class ZSPRFile {
 	}
 
 	/**
-	 * Sets the {@code spriteData} field.
+	 * Sets the {@code spriteData} field to a copy of {@code spriteData}.
 	 * @param spriteData
 	 */
 	public void setSpriteData(byte[] spriteData) {
-		this.spriteData = spriteData;
+		this.spriteData = copy(spriteData);
+		markDirty();
 	}
 
 	/**
-	 * @return {@code spriteData} field
+	 * @return A copy of the {@code spriteData} field
 	 */
 	public byte[] getSpriteData() {
-		return this.spriteData;
+		return copy(this.spriteData);
 	}
 
 	/**
-	 * Sets the {@code palData} field.
+	 * Sets the {@code palData} field to a copy of {@code palData}.
 	 * @param palData
 	 */
 	public void setPalData(byte[] palData) {
-		this.palData = palData;
+		this.palData = copy(palData);
+		dirty = true;
 	}
 
 	/**
-	 * @return {@code palData} field
+	 * @return A copy of the {@code palData} field
 	 */
 	public byte[] getPalData() {
-		return this.palData;
+		return copy(this.palData);
 	}
 
 	/**
-	 * Sets the {@code glovesData} field.
+	 * Sets the {@code glovesData} field to a copy of {@code glovesData}.
 	 * @param glovesData
 	 */
 	public void setGlovesData(byte[] glovesData) {
-		this.glovesData = glovesData;
+		this.glovesData = copy(glovesData);
+		dirty = true;
 	}
 
 	/**
-	 * @return {@code glovesData} field
+	 * @return A copy of the {@code glovesData} field
 	 */
 	public byte[] getGlovesData() {
-		return this.glovesData;
+		return copy(this.glovesData);
 	}
 
 	/**
@@ -121,6 +148,7 @@ public class ZSPRFile {
 	 */
 	public void setSpriteName(String spriteName) {
 		this.spriteName = spriteName;
+		dirty = true;
 	}
 
 	/**
@@ -136,6 +164,7 @@ public class ZSPRFile {
 	 */
 	public void setAuthorName(String authorName) {
 		this.authorName = authorName;
+		dirty = true;
 	}
 
 	/**
@@ -189,6 +218,7 @@ public class ZSPRFile {
 
 		// set fixed name
 		authorNameROM = autoName;
+		dirty = true;
 	}
 
 	/**
@@ -208,6 +238,7 @@ public class ZSPRFile {
 		}
 
 		this.spriteName = sprName;
+		dirty = true;
 	}
 
 	public String toString() {
@@ -217,162 +248,175 @@ public class ZSPRFile {
 	}
 
 	/**
-	 * Gets data stream after forcing any changes with {@link #refreshDataStream()}.
+	 * Flags every part of this file as changed, so the next data stream is rebuilt in full.
+	 * Setters already flag their changes, and the data getters return copies,
+	 * so the stream can't go stale without this.
+	 */
+	public void markDirty() {
+		dirty = true;
+		spriteSumDirty = true;
+	}
+
+	/**
+	 * Gets a copy of the data stream, rebuilding it only if this file has changed since it was last made.
 	 */
 	public byte[] getDataStream() {
-		refreshDataStream();
-		return dataStream;
+		if (dirty) {
+			rebuildDataStream();
+		}
+		return dataStream.clone();
 	}
 
 	/**
-	 * Updates the data stream for this file.
+	 * Rebuilds the data stream for this file in full, including any in place edits.
 	 */
 	public void refreshDataStream() {
-		ArrayList<Byte> ret = new ArrayList<Byte>();
+		markDirty();
+		rebuildDataStream();
+	}
 
-		// add header
-		for (byte b : FLAG) {
-			ret.add(b);
+	/**
+	 * Updates the data stream for this file.
+	 * The sprite data is only summed again if it has been replaced,
+	 * so changing names or colors only costs the checksum of the small sections.
+	 */
+	private void rebuildDataStream() {
+		// quietly adjust empty gloves data to vanilla
+		boolean allNull = true;
+		for (byte b : glovesData) {
+			if (b != 0) {
+				allNull = false;
+				break;
+			}
 		}
 
-		// add version
-		for (byte b : ZSPR_VERSION) {
-			ret.add(b);
+		// *curses sosuke and veetorp*
+		if (allNull) {
+			for (int i = 0; i < GLOVE_DATA_SIZE; i++) {
+				glovesData[i] = VANILLA_GLOVE_COLORS[i];
+			}
 		}
 
+		// names are null terminated; sprite and author names are UTF-16LE, ROM author is ASCII
+		int sprDataOffset = SPRITE_NAME_OFFSET
+				+ (spriteName.length() + 1) * 2
+				+ (authorName.length() + 1) * 2
+				+ (authorNameROM.length() + 1);
+		int palDataOffset = sprDataOffset + spriteData.length;
+		int size = palDataOffset + palData.length + glovesData.length;
+
+		dataStream = new byte[size];
+		ByteBuffer ret = ByteBuffer.wrap(dataStream).order(ByteOrder.LITTLE_ENDIAN);
+
+		// add header
+		ret.put(FLAG);
+
+		// add version
+		ret.put(ZSPR_VERSION);
+
 		// add checksum - default to 0000FFFF to start
-		byte[] defaultCksm = new byte[] {
-				0x00, 0x00,
-				(byte) 0xFF, (byte) 0xFF // ffs signed bytes
-			};
-		for (byte b : defaultCksm) {
-			ret.add(b);
-		}
+		ret.put(DEFAULT_CHECKSUM);
 
-		// add sprite data offset, start with 0s
-		for (byte b : new byte[SPRITE_OFFSET_SIZE]) {
-			ret.add(b);
-		}
+		// add sprite data offset
+		ret.putInt(sprDataOffset);
 
 		// add sprite size (constant)
-		for (byte b : toByteArray(SPRITE_SIZE_SHORT)) {
-			ret.add(b);
-		}
+		ret.putShort(SPRITE_SIZE_SHORT);
 
-		// add palette data offset, start with 0s
-		for (byte b : new byte[PAL_OFFSET_SIZE]) {
-			ret.add(b);
-		}
+		// add palette data offset
+		ret.putInt(palDataOffset);
 
 		// add palette size (constant)
-		for (byte b : toByteArray((short) (PAL_SIZE_SHORT + GLOVE_DATA_SIZE))) {
-			ret.add(b);
-		}
+		ret.putShort((short) (PAL_SIZE_SHORT + GLOVE_DATA_SIZE));
 
 		// add sprite type 01 00 for player sprite
-		for (byte b : new byte[] { 1, 0 }) {
-			ret.add(b);
-		}
+		ret.put(PLAYER_TYPE);
 
-		// add reserved (constant size)
-		for (byte b : new byte[RESERVED_SIZE]) {
-			ret.add(b);
-		}
+		// add reserved (constant size); already 0s
+		ret.position(ret.position() + RESERVED_SIZE);
 
-		// convert to byte arrays
-		byte[] sName = toByteArray(spriteName + '\0'); // add null terminators here
-		byte[] auth = toByteArray(authorName + '\0');
-
-		// add sprite name
-		for (byte b : sName) { // variable length; null terminated
-			ret.add(b);
-		}
-
-		// add author name
-		for (byte b : auth) { // variable length; null terminated
-			ret.add(b);
-		}
+		// add sprite name and author name
+		putUTF16(ret, spriteName);
+		putUTF16(ret, authorName);
 
 		// treat authorNameROM differently as it's ASCII, not UTF-16LE
-		char[] authROM = (authorNameROM + '\0').toCharArray(); // add null terminator here
-		for (char c : authROM) {
-			ret.add((byte) c);
-		}
-
-		// size is now index of sprite data
-		int sprDataOffset = ret.size();
-
-		byte[] sprDataOffsets = toByteArray(sprDataOffset);
-		for (int i = 0; i < SPRITE_OFFSET_INDICES.length; i++) {
-			ret.set(SPRITE_OFFSET_INDICES[i], sprDataOffsets[i]);
+		for (int i = 0, l = authorNameROM.length(); i < l; i++) {
+			ret.put((byte) authorNameROM.charAt(i));
 		}
+		ret.put((byte) 0);
 
-		// add sprite data
-		for (byte b : spriteData) { // Size defined in SPRITE_DATA_SIZE
-			ret.add(b);
+		// add sprite data, reusing its sum if it hasn't changed
+		ret.put(spriteData);
+		if (spriteSumDirty) {
+			spriteSum = sum(spriteData, 0, spriteData.length);
+			spriteSumDirty = false;
 		}
 
-		// size is now index of pal data
-		int palDataOffset = ret.size();
+		// add palette data and gloves data
+		ret.put(palData);
+		ret.put(glovesData);
 
-		byte[] palDataOffsets = toByteArray(palDataOffset);
-		for (int i = 0; i < PAL_OFFSET_INDICES.length; i++) {
-			ret.set(PAL_OFFSET_INDICES[i], palDataOffsets[i]);
-		}
+		// calculate checksum
+		int cksm = sum(dataStream, 0, sprDataOffset)
+				+ spriteSum
+				+ sum(dataStream, palDataOffset, size);
+		byte[] chalksome = checksumBytes(cksm);
 
-		// add palette data
-		for (byte b : palData) { // Size defined in PAL_DATA_SIZE
-			ret.add(b);
+		// add checksum to file
+		for (int i = 0; i < CHECKSUM_SIZE; i++) {
+			dataStream[CHECKSUM_INDICES[i]] = chalksome[i];
 		}
+		dirty = false;
+	}
 
-		// quietly adjust empty gloves data to vanilla
-		boolean allNull = true;
-		for (byte b : glovesData) {
-			if (b != 0) {
-				allNull = false;
-				break;
-			}
+	/**
+	 * Writes a string as null terminated UTF-16LE, one {@code char} at a time.
+	 */
+	private static void putUTF16(ByteBuffer buff, String s) {
+		for (int i = 0, l = s.length(); i < l; i++) {
+			buff.putChar(s.charAt(i));
 		}
+		buff.putChar('\0');
+	}
 
-		// *curses sosuke and veetorp*
-		if (allNull) {
-			for (int i = 0; i < GLOVE_DATA_SIZE; i++) {
-				glovesData[i] = VANILLA_GLOVE_COLORS[i];
-			}
-		}
+	/**
+	 * Checksum is based off of
+	 * every byte between the buffer's position and limit.
+	 */
+	private static byte[] calcChecksum(ByteBuffer spr) {
+		int cksm = 0;
 
-		// add gloves data
-		for (byte b : glovesData) {
-			ret.add(b);
+		for (int i = spr.position(), l = spr.limit(); i < l; i++) {
+			int b2 = Byte.toUnsignedInt(spr.get(i));
+			cksm += b2;
 		}
 
-		// convert to a byte array
-		int s = ret.size();
-		dataStream = new byte[s];
-		for (int i = 0; i < s; i++) {
-			dataStream[i] = (Byte) ret.get(i);
-		}
+		return checksumBytes(cksm);
+	}
 
-		// calculate checksum
-		byte[] chalksome = calcChecksum(dataStream);
+	/**
+	 * Copies an array, so no caller shares this file's data and the dirty flags stay right.
+	 */
+	private static byte[] copy(byte[] data) {
+		return data == null ? null : data.clone();
+	}
 
-		// add checksum to file
-		for (int i = 0; i < CHECKSUM_SIZE; i++) {
-			dataStream[CHECKSUM_INDICES[i]] = chalksome[i];
+	/**
+	 * Sum of unsigned bytes from {@code start} up to {@code end}.
+	 */
+	private static int sum(byte[] data, int start, int end) {
+		int ret = 0;
+		for (int i = start; i < end; i++) {
+			ret += data[i] & 0xFF;
 		}
+		return ret;
 	}
 
 	/**
-	 * Checksum is based off of
+	 * Stores a sum as its low 16 bits followed by their complement.
 	 */
-	private static byte[] calcChecksum(byte[] spr) {
+	private static byte[] checksumBytes(int cksm) {
 		byte[] ret = new byte[CHECKSUM_SIZE];
-		int cksm = 0;
-
-		for (byte b : spr) {
-			int b2 = Byte.toUnsignedInt(b);
-			cksm += b2;
-		}
 
 		ret[0] = (byte) (cksm & 0xFF);
 		ret[1] = (byte) ((cksm >> 8) & 0xFF);
@@ -394,7 +438,9 @@ public class ZSPRFile {
 	 * @see #runChecksum(byte[])
 	 */
 	public boolean runSelfChecksum() throws ZSPRFormatException {
-		refreshDataStream();
+		if (dirty) {
+			rebuildDataStream();
+		}
 		return runChecksum(dataStream);
 	}
 
@@ -406,10 +452,21 @@ public class ZSPRFile {
 	 * @throws ZSPRFormatException
 	 */
 	public static boolean runChecksum(byte[] spr) throws ZSPRFormatException {
+		return runChecksum(ByteBuffer.wrap(spr));
+	}
+
+	/**
+	 * Validates the checksum of a file held between the buffer's position and limit.
+	 * This function should always return true.
+	 * If the checksum is invalid, a {@linkplain ZSPRFormatException} will be thrown.
+	 * @param spr
+	 * @throws ZSPRFormatException
+	 */
+	public static boolean runChecksum(ByteBuffer spr) throws ZSPRFormatException {
 		byte[] myCksm = new byte[CHECKSUM_SIZE]; // stored checksum
 
 		for (int i = 0; i < CHECKSUM_SIZE; i++) {
-			myCksm[i] = spr[CHECKSUM_INDICES[i]];
+			myCksm[i] = spr.get(spr.position() + CHECKSUM_INDICES[i]);
 		}
 
 		byte[] chestsum = calcChecksum(spr); // test checksum
@@ -438,215 +495,235 @@ public class ZSPRFile {
 			throw new ZSPRFormatException("File is not a " + EXTENSION + " file.");
 		}
 
-		byte[] zSPR = SpriteManipulator.readFile(path);
+		return readFrom(ByteBuffer.wrap(SpriteManipulator.readFile(path)));
+	}
 
-		// check for ZSPR file header
-		for (int i = 0; i < 4; i++) {
-			if (zSPR[i] != FLAG[i]) {
-				throw new ZSPRFormatException("Obsolete file format; please convert to " + ZSPR_SPEC);
-			}
+	/**
+	 * Reads an entire stream and creates a new {@code ZSPRFile} object from it.
+	 * The stream is not closed.
+	 * @param in
+	 * @throws IOException
+	 * @throws ZSPRFormatException
+	 */
+	public static ZSPRFile readFrom(InputStream in) throws ZSPRFormatException, IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(SPRITE_DATA_SIZE + 1024);
+		byte[] buff = new byte[8192];
+		int n;
+		while ((n = in.read(buff)) != -1) {
+			out.write(buff, 0, n);
 		}
 
-		byte[] spriteType = new byte[TYPE_SIZE];
-		for (int i = 0; i < TYPE_SIZE; i++) {
-			spriteType[i] = zSPR[TYPE_INDICES[i]];
-		}
+		return readFrom(ByteBuffer.wrap(out.toByteArray()));
+	}
 
-		if (!(spriteType[0] == 0x01 && spriteType[1] == 0x00)) {
-			throw new ZSPRFormatException("The selected sprite is not a playable character sprite.");
-		}
+	/**
+	 * Creates a new {@code ZSPRFile} object from the file held between the buffer's position and limit.
+	 * The buffer's position, limit and byte order are left untouched.
+	 * @param buff
+	 * @throws ZSPRFormatException
+	 */
+	public static ZSPRFile readFrom(ByteBuffer buff) throws ZSPRFormatException {
+		ByteBuffer zSPR = buff.slice().order(ByteOrder.LITTLE_ENDIAN);
+
+		checkHeader(zSPR);
 
 		// run a check sum
 		runChecksum(zSPR);
 		ZSPRFile ret = new ZSPRFile();
 
-		// find the sprite name
-		String spriteName = "";
+		// find the names; each continues from the end of the last
 		int loc = SPRITE_NAME_OFFSET;
-		boolean nullFound = false;
-		do {
-			byte t1 = zSPR[loc++]; // we want to include the null terminator in the count
-			byte t2 = zSPR[loc++];
-			short s = 0;
-			s |= t2; // little endian, so t2 first for java char casting
-			s <<= 8;
-			s |= t1;
-			if (s == 0) { // if both bytes are 0, it's null; terminate
-				nullFound = true;
-				continue;
-			}
-			char temp = (char) s;
-			spriteName += temp;
-		} while (!nullFound);
-
-		ret.setSpriteName(spriteName);
-
-		// find the author's name
-		String authorName = "";
-
-		// continue from this loc for author name
-		nullFound = false;
-		do {
-			byte t1 = zSPR[loc++]; // we want to include the null terminator in the count
-			byte t2 = zSPR[loc++];
-			short s = 0;
-			s |= t2; // little endian, so t2 first for java char casting
-			s <<= 8;
-			s |= t1;
-			if (s == 0) { // if both bytes are 0, it's null; terminate
-				nullFound = true;
-				continue;
-			}
-			char temp = (char) s;
-			authorName += temp;
-		} while (!nullFound);
+		int end = findUTF16End(zSPR, loc);
+		ret.setSpriteName(decode(zSPR, loc, end, StandardCharsets.UTF_16LE));
 
-		ret.setAuthorName(authorName);
+		loc = end + 2;
+		end = findUTF16End(zSPR, loc);
+		ret.setAuthorName(decode(zSPR, loc, end, StandardCharsets.UTF_16LE));
 
-		// find the author's name ASCII
-		String authorNameROM = "";
+		// the ROM name is written 1 byte per char
+		loc = end + 2;
+		end = findByteEnd(zSPR, loc);
+		ret.setAuthorNameROM(decode(zSPR, loc, end, StandardCharsets.ISO_8859_1));
 
-		// continue from this loc for author name
-		nullFound = false;
-		do {
-			byte b = zSPR[loc++]; // we want to include the null terminator in the count
-			if (b == 0) { // if null byte, terminate
-				nullFound = true;
-				continue;
-			}
-			char temp = (char) b;
-			authorNameROM += temp;
-		} while (!nullFound);
+		// write sprite data
+		ret.spriteData = getBlock(zSPR, getSpriteOffset(zSPR), SPRITE_DATA_SIZE);
 
-		ret.setAuthorNameROM(authorNameROM);
+		// write pal data
+		loc = getPalOffset(zSPR);
+		ret.palData = getBlock(zSPR, loc, PAL_DATA_SIZE);
 
-		// find sprite offset
-		loc = 0;
-		for (int i : SPRITE_OFFSET_INDICES) {
-			loc <<= 8;
-			loc |= zSPR[i];
+		// gloves data continues from end of palette, but might not exist
+		loc += PAL_DATA_SIZE;
+		if (loc + GLOVE_DATA_SIZE <= zSPR.limit()) {
+			ret.glovesData = getBlock(zSPR, loc, GLOVE_DATA_SIZE);
+		} else {
+			ret.glovesData = new byte[GLOVE_DATA_SIZE];
 		}
-		loc = Integer.reverseBytes(loc); // reverse because LE
 
-		// write sprite data
-		byte[] sprData = new byte[SPRITE_DATA_SIZE];
-		for (int i = 0; i < SPRITE_DATA_SIZE; i++, loc++) {
-			sprData[i] = zSPR[loc];
-		}
+		// return new sprfile object
+		return ret;
+	}
 
-		ret.setSpriteData(sprData);
+	/**
+	 * Reads only the header and names of a file, without its data or checksum.
+	 * Reading stops at the sprite data offset.
+	 * @param path
+	 * @throws IOException
+	 * @throws ZSPRFormatException
+	 */
+	public static ZSPRMetadata readMetadata(Path path) throws ZSPRFormatException, IOException {
+		try (FileChannel fc = FileChannel.open(path, StandardOpenOption.READ)) {
+			long fileSize = fc.size();
+			ByteBuffer zSPR = readHead(fc, (int) Math.min(METADATA_READ_SIZE, fileSize));
+			checkHeader(zSPR);
+
+			// names that don't fit in the first read are still before the sprite data
+			int max = (int) Math.min(Math.max(getSpriteOffset(zSPR), SPRITE_NAME_OFFSET), fileSize);
+			int[] ends = findNameEnds(zSPR, max);
+			if (ends == null) {
+				zSPR = readHead(fc, max);
+				ends = findNameEnds(zSPR, max);
+				if (ends == null) {
+					throw new ZSPRFormatException("Unterminated name; file may be corrupted.");
+				}
+			}
 
-		// find palete offset
-		loc = 0;
-		for (int i : PAL_OFFSET_INDICES) {
-			loc <<= 8;
-			loc |= zSPR[i];
+			return new ZSPRMetadata(
+					decode(zSPR, SPRITE_NAME_OFFSET, ends[0], StandardCharsets.UTF_16LE),
+					decode(zSPR, ends[0] + 2, ends[1], StandardCharsets.UTF_16LE),
+					decode(zSPR, ends[1] + 2, ends[2], StandardCharsets.ISO_8859_1),
+					Byte.toUnsignedInt(zSPR.get(FLAG_SIZE)),
+					Short.toUnsignedInt(zSPR.getShort(TYPE_INDICES[0])),
+					Short.toUnsignedInt(zSPR.getShort(CHECKSUM_INDICES[0])));
 		}
-		loc = Integer.reverseBytes(loc); // reverse because LE
+	}
 
-		// write pal data
-		byte[] palData = new byte[PAL_DATA_SIZE];
-		for (int i = 0; i < PAL_DATA_SIZE; i++, loc++) {
-			palData[i] = zSPR[loc];
+	/**
+	 * Reads the start of a file with positional reads.
+	 */
+	private static ByteBuffer readHead(FileChannel fc, int size) throws IOException {
+		ByteBuffer ret = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+		while (ret.hasRemaining()) {
+			if (fc.read(ret, ret.position()) < 0) {
+				break;
+			}
 		}
+		ret.flip();
+		return ret;
+	}
 
-		ret.setPalData(palData);
+	/**
+	 * Finds the terminators of all 3 names.
+	 * @return {@code null} if they're not all in the buffer, but could be in the first {@code max} bytes
+	 */
+	private static int[] findNameEnds(ByteBuffer zSPR, int max) throws ZSPRFormatException {
+		try {
+			int[] ret = new int[3];
+			ret[0] = findUTF16End(zSPR, SPRITE_NAME_OFFSET);
+			ret[1] = findUTF16End(zSPR, ret[0] + 2);
+			ret[2] = findByteEnd(zSPR, ret[1] + 2);
+			return ret;
+		} catch (ZSPRFormatException e) {
+			if (zSPR.limit() >= max) {
+				throw e;
+			}
+			return null;
+		}
+	}
 
-		// find and write gloves data
-		byte[] glovesData = new byte[GLOVE_DATA_SIZE];
-		try { // catch errors since gloves data might not exist
-			for (int i = 0; i < GLOVE_DATA_SIZE; i++, loc++) { // continue from end of palette
-				glovesData[i] = zSPR[loc];
+	/**
+	 * Checks the {@code ZSPR} flag and the sprite type of a file.
+	 * @param zSPR - little endian buffer starting at the file
+	 * @throws ZSPRFormatException
+	 */
+	static void checkHeader(ByteBuffer zSPR) throws ZSPRFormatException {
+		if (zSPR.limit() < SPRITE_NAME_OFFSET) {
+			throw new ZSPRFormatException("File is too short to be a " + EXTENSION + " file.");
+		}
+
+		// check for ZSPR file header
+		for (int i = 0; i < FLAG_SIZE; i++) {
+			if (zSPR.get(i) != FLAG[i]) {
+				throw new ZSPRFormatException("Obsolete file format; please convert to " + ZSPR_SPEC);
 			}
-		} catch (Exception e) {
-			// Do nothing
 		}
 
-		ret.setGlovesData(glovesData);
+		if (!(zSPR.get(TYPE_INDICES[0]) == 0x01 && zSPR.get(TYPE_INDICES[1]) == 0x00)) {
+			throw new ZSPRFormatException("The selected sprite is not a playable character sprite.");
+		}
+	}
 
-		// return new sprfile object
-		return ret;
+	/**
+	 * @return Offset of the sprite data, as stored in the header
+	 */
+	static int getSpriteOffset(ByteBuffer zSPR) {
+		return zSPR.getInt(SPRITE_OFFSET_INDICES[0]);
+	}
+
+	/**
+	 * @return Offset of the palette data, as stored in the header
+	 */
+	static int getPalOffset(ByteBuffer zSPR) {
+		return zSPR.getInt(PAL_OFFSET_INDICES[0]);
+	}
+
+	/**
+	 * Finds the null terminator of a UTF-16LE string.
+	 * @return Index of the terminator
+	 * @throws ZSPRFormatException if the string runs off the end of the buffer
+	 */
+	static int findUTF16End(ByteBuffer zSPR, int start) throws ZSPRFormatException {
+		for (int i = start, l = zSPR.limit() - 1; i < l; i += 2) {
+			if (zSPR.get(i) == 0 && zSPR.get(i+1) == 0) {
+				return i;
+			}
+		}
+		throw new ZSPRFormatException("Unterminated name; file may be corrupted.");
 	}
 
 	/**
-	 * Turns valid formats into an array of bytes.
-	 * With regards to the name and author parameters,
-	 * this function does not add the null terminator {@code \0}.
-	 * <br /><br />
-	 * Little endian is expected in ZSPR files, so bytes will be reversed here.
-	 * @param o
-	 * @return {@code byte[]} array according to follows:
-	 * <table>
-	 *   <caption>Accepted types</caption>
-	 *   <tr>
-	 *     <th>Type</th>
-	 *     <th>Bytes</th>
-	 *   </tr>
-	 *   <tr>
-	 *     <td>{@code Integer} <i>or</i> {@code int}</td>
-	 *     <td>4</td>
-	 *   </tr>
-	 *   <tr>
-	 *     <td>{@code Short} <i>or</i> {@code short}</td>
-	 *     <td>2</td>
-	 *   </tr>
-	 *   <tr>
-	 *     <td style="padding-right: 6px;">{@code Character[]} <i>or</i> {@code char[]}</td>
-	 *     <td>Length of {@code o} * 2</td>
-	 *   </tr>
-	 *   <tr>
-	 *     <td>{@code String}</td>
-	 *     <td>Length of {@code o} * 2</td>
-	 *   </tr>
-	 * </table>
-	 * All other types will return an empty array for safety reasons.
-	 */
-	private static byte[] toByteArray(Object o) {
-		byte[] ret;
-		if (o instanceof Integer) { // integer to 4 byte
-			int temp = (int) o;
-			ret = new byte[] {
-						(byte) (temp & 0xFF),
-						(byte) ((temp >> 8) & 0xFF),
-						(byte) ((temp >> 16) & 0xFF),
-						(byte) ((temp >> 24) & 0xFF)
-					};
-		} else if (o instanceof Short) { // short to 2 byte
-			short temp = (short) o;
-			ret = new byte[] {
-						(byte) (temp & 0xFF),
-						(byte) ((temp >> 8) & 0xFF),
-					};
-		} else if (o instanceof char[] || o instanceof Character[]) { // cast chars to bytes
-			ret = charArrayToByteArray((char[]) o);
-		} else if (o instanceof String) { // cast chars to bytes
-			char[] temp = ((String) o).toCharArray();
-			ret = charArrayToByteArray(temp);
-		} else { // default to empty array
-			ret = new byte[] {};
+	 * Finds the null terminator of a 1 byte per char string.
+	 * @return Index of the terminator
+	 * @throws ZSPRFormatException if the string runs off the end of the buffer
+	 */
+	static int findByteEnd(ByteBuffer zSPR, int start) throws ZSPRFormatException {
+		for (int i = start, l = zSPR.limit(); i < l; i++) {
+			if (zSPR.get(i) == 0) {
+				return i;
+			}
 		}
+		throw new ZSPRFormatException("Unterminated name; file may be corrupted.");
+	}
 
+	/**
+	 * Decodes the bytes from {@code start} up to {@code end} in one go.
+	 */
+	static String decode(ByteBuffer zSPR, int start, int end, Charset charset) {
+		ByteBuffer s = zSPR.duplicate();
+		s.limit(end).position(start);
+		return charset.decode(s).toString();
+	}
+
+	/**
+	 * Copies a block of data out of the file.
+	 * @throws ZSPRFormatException if the block runs off the end of the buffer
+	 */
+	static byte[] getBlock(ByteBuffer zSPR, int start, int size) throws ZSPRFormatException {
+		byte[] ret = new byte[size];
+		getSlice(zSPR, start, size).get(ret);
 		return ret;
 	}
 
 	/**
-	 * Turns a character array into an array of bytes.
-	 * This function should only be called by {@code toByteArray()},
-	 * which should act as a wrapper for all byte conversions
-	 * to prevent compatability issues if anything changes.
-	 * @param ca
-	 * @return
+	 * Creates a read-only view of a block of data in the file, without copying it.
+	 * @throws ZSPRFormatException if the block runs off the end of the buffer
 	 */
-	private static byte[] charArrayToByteArray(char[] ca) {
-		int l = ca.length;
-		byte[] ret = new byte[l * 2];
-		for (int i = 0; i < l; i++) {
-			short c = (short) ca[i];
-			byte bp = (byte) ((c >> 8) & 0xFF);
-			byte lp = (byte) (c & 0xFF);
-			ret[i*2] = lp; // little endian
-			ret[i*2+1] = bp;
+	static ByteBuffer getSlice(ByteBuffer zSPR, int start, int size) throws ZSPRFormatException {
+		if (start < 0 || start > zSPR.limit() - size) {
+			throw new ZSPRFormatException("File is too short; file may be corrupted.");
 		}
-		return ret;
+		ByteBuffer s = zSPR.asReadOnlyBuffer();
+		s.limit(start + size).position(start);
+		return s.slice();
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,74 @@
+package spritemanipulator;
+
+/**
+ * Immutable summary of a {@code ZSPR} file's header and names,
+ * as read by {@link ZSPRFile#readMetadata(java.nio.file.Path)}.
+ *
+ * @author fatmanspanda
+ */
+public final class ZSPRMetadata {
+	// local vars
+	private final String spriteName;
+	private final String authorName;
+	private final String authorNameROM;
+	private final int version;
+	private final int type;
+	private final int checksum;
+
+	ZSPRMetadata(String spriteName, String authorName, String authorNameROM,
+			int version, int type, int checksum) {
+		this.spriteName = spriteName;
+		this.authorName = authorName;
+		this.authorNameROM = authorNameROM;
+		this.version = version;
+		this.type = type;
+		this.checksum = checksum;
+	}
+
+	/**
+	 * @return Sprite name
+	 */
+	public String getSpriteName() {
+		return spriteName;
+	}
+
+	/**
+	 * @return Author name
+	 */
+	public String getAuthorName() {
+		return authorName;
+	}
+
+	/**
+	 * @return Author name for ROM credits
+	 */
+	public String getAuthorNameROM() {
+		return authorNameROM;
+	}
+
+	/**
+	 * @return The format version byte
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return The sprite type, as a little endian {@code short}; {@code 1} for player sprites
+	 */
+	public int getType() {
+		return type;
+	}
+
+	/**
+	 * @return The checksum stored in the file, as {@code 0xHHLL}
+	 */
+	public int getChecksum() {
+		return checksum;
+	}
+
+	@Override
+	public String toString() {
+		return spriteName;
+	}
+}
@@ -0,0 +1,222 @@
+package spritemanipulator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static spritemanipulator.SpriteManipulator.*;
+
+/**
+ * Read-only view of a {@code ZSPR} file mapped into memory.
+ * <br><br>
+ * Opening a view only checks the header and finds where each block starts;
+ * no data is copied until it is asked for.
+ * Names are decoded on first use, and data blocks are given either as read-only slices
+ * of the mapped file or as copies.
+ *
+ * @author fatmanspanda
+ */
+public final class ZSPRView {
+	// local vars
+	private final ByteBuffer zSPR;
+	private final int spriteNameEnd;
+	private final int authorNameEnd;
+	private final int authorNameROMEnd;
+	private final int spriteOffset;
+	private final int palOffset;
+	private final boolean hasGloves;
+	private String spriteName;
+	private String authorName;
+	private String authorNameROM;
+
+	/**
+	 * Creates a view of a file held between the buffer's position and limit.
+	 * The buffer itself is left untouched.
+	 * @param buff
+	 * @param verify - {@code true} to validate the checksum
+	 * @throws ZSPRFormatException
+	 */
+	public ZSPRView(ByteBuffer buff, boolean verify) throws ZSPRFormatException {
+		zSPR = buff.slice().order(ByteOrder.LITTLE_ENDIAN);
+
+		ZSPRFile.checkHeader(zSPR);
+		if (verify) {
+			ZSPRFile.runChecksum(zSPR);
+		}
+
+		spriteNameEnd = ZSPRFile.findUTF16End(zSPR, SPRITE_NAME_OFFSET);
+		authorNameEnd = ZSPRFile.findUTF16End(zSPR, spriteNameEnd + 2);
+		authorNameROMEnd = ZSPRFile.findByteEnd(zSPR, authorNameEnd + 2);
+
+		// check the blocks now so the getters can't fail
+		spriteOffset = ZSPRFile.getSpriteOffset(zSPR);
+		palOffset = ZSPRFile.getPalOffset(zSPR);
+		ZSPRFile.getSlice(zSPR, spriteOffset, SPRITE_DATA_SIZE);
+		ZSPRFile.getSlice(zSPR, palOffset, PAL_DATA_SIZE);
+		hasGloves = palOffset + PAL_DATA_SIZE + GLOVE_DATA_SIZE <= zSPR.limit();
+	}
+
+	/**
+	 * Maps a file into memory and creates a view of it.
+	 * The mapping stays valid after the file is closed.
+	 * @param path
+	 * @param verify - {@code true} to validate the checksum
+	 * @throws IOException
+	 * @throws ZSPRFormatException
+	 */
+	public static ZSPRView open(Path path, boolean verify) throws IOException, ZSPRFormatException {
+		try (FileChannel fc = FileChannel.open(path, StandardOpenOption.READ)) {
+			return new ZSPRView(fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size()), verify);
+		}
+	}
+
+	/**
+	 * Maps a file into memory and creates a view of it, validating its checksum.
+	 * @param path
+	 * @throws IOException
+	 * @throws ZSPRFormatException
+	 */
+	public static ZSPRView open(Path path) throws IOException, ZSPRFormatException {
+		return open(path, true);
+	}
+
+	/**
+	 * Validates the checksum of the viewed file.
+	 * This function should always return true.
+	 * If the checksum is invalid, a {@linkplain ZSPRFormatException} will be thrown.
+	 * @throws ZSPRFormatException
+	 */
+	public boolean runChecksum() throws ZSPRFormatException {
+		return ZSPRFile.runChecksum(zSPR);
+	}
+
+	/**
+	 * @return The format version byte
+	 */
+	public int getVersion() {
+		return Byte.toUnsignedInt(zSPR.get(FLAG.length));
+	}
+
+	/**
+	 * @return The checksum stored in the file, as {@code 0xHHLL}
+	 */
+	public int getStoredChecksum() {
+		return Short.toUnsignedInt(zSPR.getShort(CHECKSUM_INDICES[0]));
+	}
+
+	/**
+	 * @return Sprite name, decoded on first use
+	 */
+	public String getSpriteName() {
+		if (spriteName == null) {
+			spriteName = ZSPRFile.decode(zSPR, SPRITE_NAME_OFFSET, spriteNameEnd,
+					StandardCharsets.UTF_16LE);
+		}
+		return spriteName;
+	}
+
+	/**
+	 * @return Author name, decoded on first use
+	 */
+	public String getAuthorName() {
+		if (authorName == null) {
+			authorName = ZSPRFile.decode(zSPR, spriteNameEnd + 2, authorNameEnd,
+					StandardCharsets.UTF_16LE);
+		}
+		return authorName;
+	}
+
+	/**
+	 * @return Author name for ROM credits, decoded on first use
+	 */
+	public String getAuthorNameROM() {
+		if (authorNameROM == null) {
+			authorNameROM = ZSPRFile.decode(zSPR, authorNameEnd + 2, authorNameROMEnd,
+					StandardCharsets.ISO_8859_1);
+		}
+		return authorNameROM;
+	}
+
+	/**
+	 * @return Read-only slice of the sprite data
+	 */
+	public ByteBuffer getSpriteBuffer() {
+		return slice(spriteOffset, SPRITE_DATA_SIZE);
+	}
+
+	/**
+	 * @return Read-only slice of the palette data
+	 */
+	public ByteBuffer getPalBuffer() {
+		return slice(palOffset, PAL_DATA_SIZE);
+	}
+
+	/**
+	 * @return Read-only slice of the gloves data; all {@code 0} if the file has none
+	 */
+	public ByteBuffer getGlovesBuffer() {
+		if (!hasGloves) {
+			return ByteBuffer.allocate(GLOVE_DATA_SIZE).asReadOnlyBuffer();
+		}
+		return slice(palOffset + PAL_DATA_SIZE, GLOVE_DATA_SIZE);
+	}
+
+	/**
+	 * @return A copy of the sprite data
+	 */
+	public byte[] getSpriteData() {
+		return copy(getSpriteBuffer());
+	}
+
+	/**
+	 * @return A copy of the palette data
+	 */
+	public byte[] getPalData() {
+		return copy(getPalBuffer());
+	}
+
+	/**
+	 * @return A copy of the gloves data
+	 */
+	public byte[] getGlovesData() {
+		return copy(getGlovesBuffer());
+	}
+
+	/**
+	 * Copies everything in this view into a new {@code ZSPRFile}.
+	 */
+	public ZSPRFile toZSPRFile() {
+		ZSPRFile ret = new ZSPRFile();
+		ret.setSpriteName(getSpriteName());
+		ret.setAuthorName(getAuthorName());
+		ret.setAuthorNameROM(getAuthorNameROM());
+		ret.setSpriteData(getSpriteData());
+		ret.setPalData(getPalData());
+		ret.setGlovesData(getGlovesData());
+		return ret;
+	}
+
+	/**
+	 * Bounds were checked when the view was made.
+	 */
+	private ByteBuffer slice(int start, int size) {
+		ByteBuffer s = zSPR.asReadOnlyBuffer();
+		s.limit(start + size).position(start);
+		return s.slice();
+	}
+
+	private static byte[] copy(ByteBuffer b) {
+		byte[] ret = new byte[b.remaining()];
+		b.get(ret);
+		return ret;
+	}
+
+	@Override
+	public String toString() {
+		return getSpriteName();
+	}
+}
@@ -0,0 +1,41 @@
+package spritemanipulator;
+
+/**
+ * Shared timing loop for the benchmark classes, which are run by hand.
+ * Each case runs one untimed round first, so the numbers are for compiled code.
+ *
+ * @author fatmanspanda
+ */
+final class Benchmark {
+	// class constants
+	static final int ROUNDS = 5;
+
+	// keeps results alive so the JIT can't drop the work
+	static long sink;
+
+	/**
+	 * Prevent instantiation
+	 */
+	private Benchmark() {}
+
+	/**
+	 * Runs a case {@code iterations} times and prints the time per run, unless warming up.
+	 */
+	static void time(String name, int iterations, boolean warmup, Runnable r) {
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			r.run();
+		}
+		long nanos = System.nanoTime() - start;
+		if (!warmup) {
+			System.out.printf("%-26s %10.2f us/op%n", name, nanos / 1e3 / iterations);
+		}
+	}
+
+	/**
+	 * @return The iteration count given on the command line, or {@code fallback}
+	 */
+	static int iterations(String[] args, int fallback) {
+		return args.length > 0 ? Integer.parseInt(args[0]) : fallback;
+	}
+}
@@ -0,0 +1,122 @@
+package spritemanipulator;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static spritemanipulator.Benchmark.*;
+import static spritemanipulator.SpriteManipulator.*;
+
+/**
+ * Times the old per-bit 4BPP loops against the row-at-a-time {@link Codec4BPP}.
+ * <br><br>
+ * Kept with the tests so it stays out of the jar; run it by hand after {@code mvn test-compile} with
+ * {@code java -cp target/classes:target/test-classes spritemanipulator.CodecBenchmark [iterations]}.
+ * Every case converts a whole sheet of random sprite data.
+ *
+ * @author fatmanspanda
+ */
+final class CodecBenchmark {
+	// class constants
+	private static final int DEFAULT_ITERATIONS = 500;
+
+	/**
+	 * Prevent instantiation
+	 */
+	private CodecBenchmark() {}
+
+	public static void main(String[] args) {
+		int iterations = iterations(args, DEFAULT_ITERATIONS);
+
+		final byte[] sprite = new byte[SPRITE_DATA_SIZE];
+		new Random(0).nextBytes(sprite);
+		final byte[][][] eightbyeight = legacyDecode(sprite);
+		final TileMap map = TileMap.fromSpriteData(sprite);
+
+		if (!Arrays.deepEquals(eightbyeight, map.toArray())
+				|| !Arrays.equals(legacyEncode(eightbyeight), map.toSpriteData())) {
+			throw new AssertionError("Codecs disagree");
+		}
+
+		for (int round = 0; round <= ROUNDS; round++) {
+			boolean warmup = round == 0;
+			time("decode, bit loop", iterations, warmup, new Runnable() {
+				public void run() {
+					sink += legacyDecode(sprite)[SPRITE_BLOCK_COUNT - 1][7][7];
+				}
+			});
+			time("decode, Codec4BPP", iterations, warmup, new Runnable() {
+				public void run() {
+					sink += TileMap.fromSpriteData(sprite).get(SPRITE_BLOCK_COUNT - 1, 7, 7);
+				}
+			});
+			time("encode, bit loop", iterations, warmup, new Runnable() {
+				public void run() {
+					sink += legacyEncode(eightbyeight)[SPRITE_DATA_SIZE - 1];
+				}
+			});
+			time("encode, Codec4BPP", iterations, warmup, new Runnable() {
+				public void run() {
+					sink += map.toSpriteData()[SPRITE_DATA_SIZE - 1];
+				}
+			});
+		}
+		System.out.println("sink: " + sink);
+	}
+
+	/**
+	 * The decoder {@code makeSpr8x8} used before {@link Codec4BPP}: one bit at a time through {@link SpriteManipulator#BPPI}.
+	 */
+	static byte[][][] legacyDecode(byte[] sprite) {
+		byte[][][] ret = new byte[SPRITE_BLOCK_COUNT][8][8];
+
+		// current block we're working on, each sized 32
+		int b = -1; // start at -1 since we're incrementing at 0mod32
+
+		int g; // locates where in interlacing map we're reading from
+
+		for (int i = 0; i < SPRITE_DATA_SIZE; i++) {
+			g = i % SPRITE_BLOCK_SIZE; // find interlacing index
+			if (g == 0) { b++; } // increment at 0th index
+
+			int r = BPPI[g][0]; // row to look at
+			int p = BPPI[g][1]; // bit plane of byte
+			byte q = sprite[i]; // byte to unravel
+
+			for (int c = 0; c < 8; c++) { // run through the byte
+				boolean bitOn = (q & (1 << (7-c))) != 0; // AND with 1 shifted to the correct plane
+				if (bitOn) { // if on (true), OR with that plane in index map
+					ret[b][r][c] |= (1 << p);
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	/**
+	 * The encoder {@code export8x8ToSPR} used before {@link Codec4BPP}: one bit at a time through {@link SpriteManipulator#BPPI}.
+	 */
+	static byte[] legacyEncode(byte[][][] eightbyeight) {
+		byte[] fourbpp = new byte[SPRITE_DATA_SIZE];
+		int pos = 0;
+
+		for (int i = 0; i < SPRITE_BLOCK_COUNT; i++) { // for each block
+			for (int j = 0; j < SPRITE_BLOCK_SIZE; j++) { // each byte, as per bppi
+				byte b = 0;
+				for (int k = 0; k < 8; k++) {
+					// get row's kth bit plane, based on index j of bppi
+					int row = BPPI[j][0];
+					int plane = BPPI[j][1];
+					int byteX = eightbyeight[i][row][k];
+
+					// AND the bits with 1000, 0100, 0010, 0001 to get bit in that location
+					boolean bitOn = (byteX & (1 << plane)) > 0;
+					b <<= 1;
+					if (bitOn) { b |= 1; }
+				} // end 8 bits of byte calculation
+				fourbpp[pos++] = b;
+			} // end 32 bytes for 8x8 block
+		} // end 896 blocks of 8x8
+		return fourbpp;
+	}
+}
@@ -0,0 +1,29 @@
+package spritemanipulator;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static spritemanipulator.SpriteManipulator.*;
+
+public class MailRenderSetTest {
+	@Test(timeout = 10000)
+	public void rejectedRenderDoesNotBlockLaterRequests() {
+		MailRenderSet set = new MailRenderSet(new byte[SPRITE_DATA_SIZE],
+				new byte[PAL_DATA_SIZE], VANILLA_GLOVE_COLORS.clone());
+		try {
+			set.getAsync(MailRenderSet.GREEN_MAIL, MailRenderSet.NO_GLOVES, r -> {
+				throw new RejectedExecutionException("shut down");
+			});
+			fail("Rejection was swallowed");
+		} catch (RejectedExecutionException e) {
+			// expected
+		}
+
+		BufferedImage img = set.get(MailRenderSet.GREEN_MAIL, MailRenderSet.NO_GLOVES);
+		assertEquals(SPRITE_SHEET_WIDTH, img.getWidth());
+		assertSame(img, set.getAsync(MailRenderSet.GREEN_MAIL, MailRenderSet.NO_GLOVES, Runnable::run).join());
+	}
+}
@@ -0,0 +1,122 @@
+package spritemanipulator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+import static spritemanipulator.SpriteManipulator.*;
+
+public class RomPatchTest {
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	@Test
+	public void ipsPatchesLikePatchRom() throws Exception {
+		ZSPRFile spr = sprite();
+		byte[] expected = new byte[ROM_MIN_SIZE];
+		patchRom(expected, spr);
+
+		byte[] rom = new byte[ROM_MIN_SIZE];
+		RomPatch.applyIPS(RomPatch.makeIPS(spr), rom);
+		assertArrayEquals(expected, rom);
+
+		Path file = romFile();
+		RomPatch.applyIPS(RomPatch.makeIPS(spr), file);
+		assertArrayEquals(expected, Files.readAllBytes(file));
+	}
+
+	@Test
+	public void truncatedIpsLeavesRomFileUnchanged() throws Exception {
+		Path file = romFile();
+		byte[] before = Files.readAllBytes(file);
+		try {
+			RomPatch.applyIPS(truncatedIPS(), file);
+			fail("Truncated patch was applied");
+		} catch (IOException e) {
+			// expected
+		}
+		assertArrayEquals(before, Files.readAllBytes(file));
+	}
+
+	@Test
+	public void truncatedIpsLeavesRomArrayUnchanged() {
+		byte[] rom = new byte[ROM_MIN_SIZE];
+		try {
+			RomPatch.applyIPS(truncatedIPS(), rom);
+			fail("Truncated patch was applied");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		assertArrayEquals(new byte[ROM_MIN_SIZE], rom);
+	}
+
+	@Test
+	public void ipsPastTheEndLeavesRomArrayUnchanged() {
+		byte[] rom = new byte[PAL_OFFSET]; // holds the sprite, but not the palette
+		try {
+			RomPatch.applyIPS(RomPatch.makeIPS(sprite()), rom);
+			fail("Patch was applied past the end");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		assertArrayEquals(new byte[PAL_OFFSET], rom);
+	}
+
+	@Test
+	public void bpsRoundTrip() {
+		byte[] base = new byte[ROM_MIN_SIZE];
+		byte[] expected = base.clone();
+		patchRom(expected, sprite());
+		assertArrayEquals(expected, RomPatch.applyBPS(RomPatch.makeBPS(sprite(), base), base));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void bpsWithCutOffHeaderIsRejected() {
+		// sizes that never end, but with every CRC right
+		byte[] source = new byte[0];
+		ByteBuffer bps = ByteBuffer.allocate(4 + 2 + 12).order(ByteOrder.LITTLE_ENDIAN);
+		bps.put(new byte[] { 'B', 'P', 'S', '1', 0x00, 0x00 });
+		bps.putInt(crc(source, source.length)).putInt(0);
+		bps.putInt(crc(bps.array(), bps.position()));
+		RomPatch.applyBPS(bps.array(), source);
+	}
+
+	private static int crc(byte[] data, int len) {
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, len);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * A whole sprite patch with its EOF and last record cut off.
+	 */
+	private static byte[] truncatedIPS() {
+		byte[] ips = RomPatch.makeIPS(sprite());
+		return Arrays.copyOf(ips, ips.length - 8);
+	}
+
+	private static ZSPRFile sprite() {
+		Random rng = new Random(0);
+		byte[] spriteData = new byte[SPRITE_DATA_SIZE];
+		byte[] palData = new byte[PAL_DATA_SIZE];
+		rng.nextBytes(spriteData);
+		rng.nextBytes(palData);
+		return new ZSPRFile(spriteData, palData, VANILLA_GLOVE_COLORS.clone(), "Test", "Nintendo");
+	}
+
+	private Path romFile() throws IOException {
+		Path ret = temp.newFile("test.sfc").toPath();
+		Files.write(ret, new byte[ROM_MIN_SIZE]);
+		return ret;
+	}
+}
@@ -0,0 +1,206 @@
+package spritemanipulator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import static spritemanipulator.Benchmark.*;
+import static spritemanipulator.SpriteManipulator.*;
+
+/**
+ * Times the old {@code ArrayList<Byte>} serializer against {@link ZSPRFile#getDataStream()}.
+ * <br><br>
+ * Kept with the tests so it stays out of the jar; run it by hand after {@code mvn test-compile} with
+ * {@code java -cp target/classes:target/test-classes spritemanipulator.SerializerBenchmark [iterations]}.
+ *
+ * @author fatmanspanda
+ */
+final class SerializerBenchmark {
+	// class constants
+	private static final int DEFAULT_ITERATIONS = 2000;
+
+	/**
+	 * Prevent instantiation
+	 */
+	private SerializerBenchmark() {}
+
+	public static void main(String[] args) {
+		int iterations = iterations(args, DEFAULT_ITERATIONS);
+
+		Random rng = new Random(0);
+		byte[] spriteData = new byte[SPRITE_DATA_SIZE];
+		byte[] palData = new byte[PAL_DATA_SIZE];
+		rng.nextBytes(spriteData);
+		rng.nextBytes(palData);
+		final ZSPRFile spr = new ZSPRFile(spriteData, palData, VANILLA_GLOVE_COLORS.clone(),
+				"Benchmark", "fatmanspanda");
+
+		if (!Arrays.equals(legacyDataStream(spr), spr.getDataStream())) {
+			throw new AssertionError("Serializers disagree");
+		}
+
+		for (int round = 0; round <= ROUNDS; round++) {
+			boolean warmup = round == 0;
+			time("ArrayList<Byte>", iterations, warmup, new Runnable() {
+				public void run() {
+					sink += legacyDataStream(spr).length;
+				}
+			});
+			time("ByteBuffer, full rebuild", iterations, warmup, new Runnable() {
+				public void run() {
+					spr.refreshDataStream();
+					sink += spr.getDataStream().length;
+				}
+			});
+			time("ByteBuffer, name changed", iterations, warmup, new Runnable() {
+				int n = 0;
+				public void run() {
+					spr.setSpriteName((n++ & 1) == 0 ? "Benchmark" : "Benchmarq");
+					sink += spr.getDataStream().length;
+				}
+			});
+		}
+		System.out.println(sink + " bytes serialized");
+	}
+
+	/**
+	 * The serializer {@code ZSPRFile} used before it wrote into a {@code ByteBuffer},
+	 * kept here only to compare against.
+	 * Unlike the original, it doesn't replace undefined gloves with vanilla colors.
+	 */
+	static byte[] legacyDataStream(ZSPRFile spr) {
+		ArrayList<Byte> ret = new ArrayList<Byte>();
+
+		// add header
+		for (byte b : FLAG) {
+			ret.add(b);
+		}
+
+		// add version
+		for (byte b : ZSPR_VERSION) {
+			ret.add(b);
+		}
+
+		// add checksum - default to 0000FFFF to start
+		for (byte b : new byte[] { 0x00, 0x00, (byte) 0xFF, (byte) 0xFF }) {
+			ret.add(b);
+		}
+
+		// add sprite data offset, start with 0s
+		for (byte b : new byte[BYTE_ALLOTMENTS[3]]) {
+			ret.add(b);
+		}
+
+		// add sprite size (constant)
+		for (byte b : toByteArray((short) SPRITE_DATA_SIZE)) {
+			ret.add(b);
+		}
+
+		// add palette data offset, start with 0s
+		for (byte b : new byte[BYTE_ALLOTMENTS[5]]) {
+			ret.add(b);
+		}
+
+		// add palette size (constant)
+		for (byte b : toByteArray((short) (PAL_DATA_SIZE + GLOVE_DATA_SIZE))) {
+			ret.add(b);
+		}
+
+		// add sprite type 01 00 for player sprite
+		for (byte b : new byte[] { 1, 0 }) {
+			ret.add(b);
+		}
+
+		// add reserved (constant size)
+		for (byte b : new byte[BYTE_ALLOTMENTS[8]]) {
+			ret.add(b);
+		}
+
+		// add sprite name and author name; variable length, null terminated
+		for (byte b : toByteArray(spr.getSpriteName() + '\0')) {
+			ret.add(b);
+		}
+		for (byte b : toByteArray(spr.getAuthorName() + '\0')) {
+			ret.add(b);
+		}
+
+		// treat authorNameROM differently as it's ASCII, not UTF-16LE
+		for (char c : (spr.getAuthorNameROM() + '\0').toCharArray()) {
+			ret.add((byte) c);
+		}
+
+		// size is now index of sprite data
+		byte[] sprDataOffsets = toByteArray(ret.size());
+		for (int i = 0; i < SPRITE_OFFSET_INDICES.length; i++) {
+			ret.set(SPRITE_OFFSET_INDICES[i], sprDataOffsets[i]);
+		}
+		for (byte b : spr.getSpriteData()) {
+			ret.add(b);
+		}
+
+		// size is now index of pal data
+		byte[] palDataOffsets = toByteArray(ret.size());
+		for (int i = 0; i < PAL_OFFSET_INDICES.length; i++) {
+			ret.set(PAL_OFFSET_INDICES[i], palDataOffsets[i]);
+		}
+		for (byte b : spr.getPalData()) {
+			ret.add(b);
+		}
+		for (byte b : spr.getGlovesData()) {
+			ret.add(b);
+		}
+
+		// convert to a byte array
+		int s = ret.size();
+		byte[] dataStream = new byte[s];
+		for (int i = 0; i < s; i++) {
+			dataStream[i] = ret.get(i);
+		}
+
+		// calculate checksum
+		int cksm = 0;
+		for (byte b : dataStream) {
+			cksm += Byte.toUnsignedInt(b);
+		}
+		int comp = cksm ^ 0xFFFF;
+		byte[] chalksome = new byte[] {
+				(byte) (cksm & 0xFF), (byte) ((cksm >> 8) & 0xFF),
+				(byte) (comp & 0xFF), (byte) ((comp >> 8) & 0xFF)
+			};
+		for (int i = 0; i < chalksome.length; i++) {
+			dataStream[CHECKSUM_INDICES[i]] = chalksome[i];
+		}
+
+		return dataStream;
+	}
+
+	/**
+	 * Old boxed little endian conversion for {@code Integer}, {@code Short} and {@code String}.
+	 */
+	private static byte[] toByteArray(Object o) {
+		if (o instanceof Integer) {
+			int temp = (int) o;
+			return new byte[] {
+					(byte) (temp & 0xFF),
+					(byte) ((temp >> 8) & 0xFF),
+					(byte) ((temp >> 16) & 0xFF),
+					(byte) ((temp >> 24) & 0xFF)
+				};
+		} else if (o instanceof Short) {
+			short temp = (short) o;
+			return new byte[] {
+					(byte) (temp & 0xFF),
+					(byte) ((temp >> 8) & 0xFF)
+				};
+		} else if (o instanceof String) {
+			char[] ca = ((String) o).toCharArray();
+			byte[] ret = new byte[ca.length * 2];
+			for (int i = 0; i < ca.length; i++) {
+				ret[i*2] = (byte) (ca[i] & 0xFF); // little endian
+				ret[i*2+1] = (byte) ((ca[i] >> 8) & 0xFF);
+			}
+			return ret;
+		}
+		return new byte[] {};
+	}
+}
@@ -0,0 +1,72 @@
+package spritemanipulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+import static spritemanipulator.SpriteManipulator.*;
+
+public class SpriteArchiveTest {
+	// class constants
+	private static final int TRAILER_SIZE = 16;
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	@Test
+	public void readsBackEveryEntry() throws Exception {
+		SpriteArchive ar = SpriteArchive.open(write(archive()));
+		assertEquals(2, ar.size());
+		assertEquals("Link", ar.get(0).getSpriteName());
+		assertEquals("Zelda", ar.get(1).getSpriteName());
+		assertEquals(1, ar.indexOf("Zelda"));
+	}
+
+	@Test(expected = ZSPRFormatException.class)
+	public void rejectsForgedCount() throws Exception {
+		byte[] b = archive();
+		littleEndian(b).putInt(b.length - TRAILER_SIZE + 8, Integer.MAX_VALUE);
+		SpriteArchive.open(write(b));
+	}
+
+	@Test(expected = ZSPRFormatException.class)
+	public void rejectsNegativeLength() throws Exception {
+		byte[] b = archive();
+		ByteBuffer buff = littleEndian(b);
+		int dir = (int) buff.getLong(b.length - TRAILER_SIZE);
+		buff.putInt(dir + 12, -5); // original length of the first entry
+		SpriteArchive.open(write(b));
+	}
+
+	private static byte[] archive() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (SpriteArchive.Writer w = new SpriteArchive.Writer(out)) {
+			w.add(sprite("Link"), true);
+			w.add(sprite("Zelda"), false);
+		}
+		return out.toByteArray();
+	}
+
+	private static ZSPRFile sprite(String name) {
+		return new ZSPRFile(new byte[SPRITE_DATA_SIZE], new byte[PAL_DATA_SIZE],
+				VANILLA_GLOVE_COLORS.clone(), name, "Nintendo");
+	}
+
+	private static ByteBuffer littleEndian(byte[] b) {
+		return ByteBuffer.wrap(b).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private Path write(byte[] b) throws IOException {
+		Path ret = temp.newFile("test." + SpriteArchive.EXTENSION).toPath();
+		Files.write(ret, b);
+		return ret;
+	}
+}
@@ -0,0 +1,57 @@
+package spritemanipulator;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+import static spritemanipulator.SpriteManipulator.*;
+
+public class SpriteLibraryTest {
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	@Test
+	public void keepsNamesTooLongForWriteUTF() throws Exception {
+		char[] c = new char[70000];
+		Arrays.fill(c, 'a');
+		String longName = new String(c);
+
+		Path root = temp.newFolder("sprites").toPath();
+		Path index = temp.getRoot().toPath().resolve("index");
+		Files.write(root.resolve("long.zspr"), sprite(longName).getDataStream());
+
+		new SpriteLibrary(root, index).refresh();
+		SpriteLibrary reloaded = new SpriteLibrary(root, index);
+		assertEquals(1, reloaded.size());
+		assertEquals(longName, reloaded.getEntries().iterator().next().getSpriteName());
+	}
+
+	@Test
+	public void hidesInvalidFiles() throws Exception {
+		Path root = temp.newFolder("sprites").toPath();
+		Path index = temp.getRoot().toPath().resolve("index");
+		Files.write(root.resolve("good.zspr"), sprite("Good").getDataStream());
+		Path bad = root.resolve("bad.zspr");
+		Files.write(bad, new byte[] { 1, 2, 3 });
+
+		SpriteLibrary lib = new SpriteLibrary(root, index);
+		lib.refresh();
+		assertEquals(1, lib.size());
+		assertNull(lib.get(bad));
+		assertEquals(1, lib.findByName("good").size());
+
+		SpriteLibrary reloaded = new SpriteLibrary(root, index);
+		reloaded.refresh();
+		assertEquals(1, reloaded.size());
+	}
+
+	private static ZSPRFile sprite(String name) {
+		return new ZSPRFile(new byte[SPRITE_DATA_SIZE], new byte[PAL_DATA_SIZE],
+				VANILLA_GLOVE_COLORS.clone(), name, "Nintendo");
+	}
+}
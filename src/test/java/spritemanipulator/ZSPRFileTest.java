@@ -0,0 +1,55 @@
+package spritemanipulator;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static spritemanipulator.SpriteManipulator.*;
+
+public class ZSPRFileTest {
+	@Test
+	public void readsBackWhatItWrites() throws Exception {
+		ZSPRFile spr = sprite();
+		ZSPRFile read = ZSPRFile.readFrom(ByteBuffer.wrap(spr.getDataStream()));
+		assertEquals("Test", read.getSpriteName());
+		assertEquals("Nintendo", read.getAuthorName());
+		assertArrayEquals(spr.getSpriteData(), read.getSpriteData());
+		assertArrayEquals(spr.getPalData(), read.getPalData());
+	}
+
+	@Test
+	public void editingReturnedArraysLeavesTheStreamAlone() throws Exception {
+		ZSPRFile spr = sprite();
+		byte[] before = spr.getDataStream();
+
+		spr.getSpriteData()[0] = 42;
+		spr.getPalData()[0] = 42;
+		spr.getDataStream()[0] = 42;
+		assertArrayEquals(before, spr.getDataStream());
+	}
+
+	@Test
+	public void checksumFollowsSetters() throws Exception {
+		ZSPRFile spr = sprite();
+		spr.getDataStream();
+
+		byte[] spriteData = spr.getSpriteData();
+		spriteData[100] = 7;
+		spr.setSpriteData(spriteData);
+		spriteData[101] = 7; // after the setter; must not reach the file
+		spr.setSpriteName("Renamed");
+
+		byte[] stream = spr.getDataStream();
+		assertTrue(ZSPRFile.runChecksum(stream));
+		ZSPRFile read = ZSPRFile.readFrom(ByteBuffer.wrap(stream));
+		assertEquals(7, read.getSpriteData()[100]);
+		assertEquals(0, read.getSpriteData()[101]);
+		assertTrue(spr.runSelfChecksum());
+	}
+
+	private static ZSPRFile sprite() {
+		return new ZSPRFile(new byte[SPRITE_DATA_SIZE], new byte[PAL_DATA_SIZE],
+				VANILLA_GLOVE_COLORS.clone(), "Test", "Nintendo");
+	}
+}